@@ -0,0 +1,506 @@
+package blackjack.daniel.ibanez;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Throughput benchmarks of the simulation hot paths: hand values, decks,
+ * playing strategies and whole headless rounds. Every benchmark is warmed up
+ * for WARMUP iterations and measured for MEASURE iterations of ITERATION ms,
+ * and its score is the mean number of operations per second.
+ *
+ * Every benchmark runs in its own JVM, started with the options of this one,
+ * so the types and branches seen by one benchmark cannot change how the JIT
+ * compiles another, and no score depends on the order the benchmarks run in.
+ * The child JVM runs a single benchmark with --only and prints its scores.
+ *
+ * Every benchmark runs its operations in its own loop, so the JIT compiles
+ * each loop for one operation only, and adds up their results so the
+ * operations cannot be removed as dead code. Inputs are prepared before the
+ * measurement and picked in turn from arrays of INPUTS random values, so the
+ * branches cannot be learned from one repeated input.
+ *
+ * The results are printed and written as JSON in the layout of JMH results,
+ * so tools that read those read these too: one object per benchmark, with its
+ * parameters and a primary metric holding the score, its 99.9% error and
+ * confidence interval, percentiles and the score of every iteration of the
+ * single fork.
+ *
+ * The benchmarks are in their own source folder, bench, and are not part of
+ * the game.
+ *
+ * Usage: java blackjack.daniel.ibanez.Benchmarks [json file] [name filter]
+ *        java blackjack.daniel.ibanez.Benchmarks --only name
+ *
+ */
+public class Benchmarks {
+	private static final int WARMUP = 3;
+	private static final int MEASURE = 5;
+	private static final long ITERATION = 1000;		// ms
+	private static final int INPUTS = 1024;			// inputs per benchmark, a power of two
+	private static final long SEED = 1;
+	private static final String SCORES = "scores:";		// start of the line a child prints its scores on
+	private static final double T = 8.6103;		// Student's t of a 99.9% interval, MEASURE - 1 degrees of freedom
+	private static final double[] PERCENTILES = { 0, 50, 90, 95, 99, 99.9, 99.99, 99.999, 99.9999, 100 };
+
+	private List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+	private long sink;		// results of all operations
+
+	/**
+	 * Operation measured by a benchmark. Its name is a class and method, like
+	 * Hand.getValue, followed by the parameters of the benchmark as name=value
+	 * separated by spaces.
+	 */
+	abstract static class Benchmark {
+		final String name;
+
+		Benchmark(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Runs the operation a number of times.
+		 * @param ops	number of operations
+		 * @return		results of the operations added together
+		 */
+		abstract long run(int ops);
+	}
+
+	/**
+	 * Result of a benchmark.
+	 */
+	static class Result {
+		final String name;
+		final double[] scores;		// ops/s of every measured iteration
+
+		Result(String name, double[] scores) {
+			this.name = name;
+			this.scores = scores;
+		}
+
+		/**
+		 * @return	mean ops/s
+		 */
+		double getScore() {
+			double sum = 0;
+			for (double score : scores)
+				sum += score;
+			return sum / scores.length;
+		}
+
+		/**
+		 * @return	half the width of the 99.9% confidence interval of the mean
+		 * 			ops/s, the score error of JMH
+		 */
+		double getError() {
+			return T * getDeviation() / Math.sqrt(scores.length);
+		}
+
+		/**
+		 * Percentile of the ops/s, estimated like JMH does.
+		 * @param p		percentile, 0 to 100
+		 * @return		ops/s
+		 */
+		double getPercentile(double p) {
+			double[] sorted = scores.clone();
+			Arrays.sort(sorted);
+			double position = p * (sorted.length + 1) / 100;
+			if (position < 1)
+				return sorted[0];
+			if (position >= sorted.length)
+				return sorted[sorted.length - 1];
+			int lower = (int) position;
+			return sorted[lower - 1] + (position - lower) * (sorted[lower] - sorted[lower - 1]);
+		}
+
+		/**
+		 * @return	sample standard deviation of the ops/s
+		 */
+		double getDeviation() {
+			if (scores.length < 2)
+				return 0;
+			double mean = getScore(), sum = 0;
+			for (double score : scores)
+				sum += (score - mean) * (score - mean);
+			return Math.sqrt(sum / (scores.length - 1));
+		}
+	}
+
+	/**
+	 * @param benchmark		benchmark to run with the others
+	 */
+	public void add(Benchmark benchmark) {
+		benchmarks.add(benchmark);
+	}
+
+	/**
+	 * Runs the benchmarks whose name contains the filter one after another,
+	 * each in a new JVM.
+	 * @param filter	part of the names, empty for all
+	 * @return			results in order, without the benchmarks that failed
+	 * @throws IOException when a JVM cannot be started
+	 * @throws InterruptedException when interrupted while waiting for a JVM
+	 */
+	public List<Result> fork(String filter) throws IOException, InterruptedException {
+		String java = javaCommand();
+		List<Result> results = new ArrayList<Result>();
+		for (Benchmark benchmark : benchmarks) {
+			if (!benchmark.name.contains(filter))
+				continue;
+
+			List<String> command = new ArrayList<String>();
+			command.add(java);
+			command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(Benchmarks.class.getName());
+			command.add("--only");
+			command.add(benchmark.name);
+			Process child = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+			double[] scores = null;
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(child.getInputStream()))) {
+				for (String line; (line = in.readLine()) != null; ) {
+					if (!line.startsWith(SCORES))
+						continue;
+					String[] values = line.substring(SCORES.length()).trim().split(" ");
+					scores = new double[values.length];
+					for (int i = 0; i < values.length; ++i)
+						scores[i] = Double.parseDouble(values[i]);
+				}
+			}
+			if (child.waitFor() != 0 || scores == null) {
+				System.err.println("Error: Benchmark " + benchmark.name + " failed");
+				continue;
+			}
+			Result result = new Result(benchmark.name, scores);
+			results.add(result);
+			print(result);
+		}
+		return results;
+	}
+
+	/**
+	 * Runs the benchmark with the given name in this JVM and prints its scores
+	 * for the JVM that started this one.
+	 * @param name		name of the benchmark
+	 * @throws IllegalArgumentException when there is no benchmark with that name
+	 */
+	public void runOnly(String name) throws IllegalArgumentException {
+		for (Benchmark benchmark : benchmarks) {
+			if (!benchmark.name.equals(name))
+				continue;
+
+			for (int i = 0; i < WARMUP; ++i)
+				iteration(benchmark);
+			StringBuilder line = new StringBuilder(SCORES);
+			for (int i = 0; i < MEASURE; ++i)
+				line.append(' ').append(iteration(benchmark));
+			System.out.println(line);
+			System.out.println("sink " + sink);
+			return;
+		}
+		throw new IllegalArgumentException("Unknown benchmark: " + name);
+	}
+
+	/**
+	 * Prints the score of a benchmark.
+	 * @param result	result of the benchmark
+	 */
+	private static void print(Result result) {
+		System.out.println(String.format("%-40s %,16.0f ops/s  +- %,.0f",
+				result.name, result.getScore(), result.getDeviation()));
+	}
+
+	/**
+	 * Runs a benchmark for ITERATION ms in batches that grow until a batch
+	 * takes at least a tenth of the iteration.
+	 * @return	ops/s
+	 */
+	private double iteration(Benchmark benchmark) {
+		long ops = 0;
+		int batch = 1;
+		long start = System.nanoTime();
+		long end = start + ITERATION * 1000000;
+		long now = start;
+		while (now < end) {
+			long before = now;
+			sink += benchmark.run(batch);
+			ops += batch;
+			now = System.nanoTime();
+			if (now - before < ITERATION * 100000 && batch < Integer.MAX_VALUE / 2)
+				batch *= 2;
+		}
+		return ops * 1e9 / (now - start);
+	}
+
+	/**
+	 * Writes results as a JSON array in the layout of JMH results.
+	 * @param results	results of a run
+	 * @param file		name of the file
+	 * @throws FileNotFoundException when the file cannot be created
+	 */
+	public static void writeJson(List<Result> results, String file) throws FileNotFoundException {
+		StringBuilder jvmArgs = new StringBuilder();
+		for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments())
+			jvmArgs.append(jvmArgs.length() > 0 ? ", " : " ").append(json(arg));
+
+		PrintWriter out = new PrintWriter(file);
+		out.println("[");
+		for (int i = 0; i < results.size(); ++i) {
+			Result result = results.get(i);
+			String[] words = result.name.split(" ");	// method followed by parameters, name=value
+			out.println("    {");
+			out.println("        \"benchmark\" : " + json(Benchmarks.class.getPackage().getName() + "." + words[0]) + ",");
+			out.println("        \"mode\" : \"thrpt\",");
+			out.println("        \"threads\" : 1,");
+			out.println("        \"forks\" : 1,");
+			out.println("        \"jvm\" : " + json(javaCommand()) + ",");
+			out.println("        \"jvmArgs\" : [" + jvmArgs + " ],");
+			out.println("        \"jdkVersion\" : " + json(System.getProperty("java.version")) + ",");
+			out.println("        \"vmName\" : " + json(System.getProperty("java.vm.name")) + ",");
+			out.println("        \"vmVersion\" : " + json(System.getProperty("java.vm.version")) + ",");
+			out.println("        \"warmupIterations\" : " + WARMUP + ",");
+			out.println("        \"warmupTime\" : \"" + ITERATION + " ms\",");
+			out.println("        \"warmupBatchSize\" : 1,");
+			out.println("        \"measurementIterations\" : " + MEASURE + ",");
+			out.println("        \"measurementTime\" : \"" + ITERATION + " ms\",");
+			out.println("        \"measurementBatchSize\" : 1,");
+			if (words.length > 1) {
+				out.println("        \"params\" : {");
+				for (int j = 1; j < words.length; ++j) {
+					String[] param = words[j].split("=", 2);
+					out.println("            " + json(param[0]) + " : " + json(param.length > 1 ? param[1] : "")
+							+ (j < words.length - 1 ? "," : ""));
+				}
+				out.println("        },");
+			}
+
+			double score = result.getScore(), error = result.getError();
+			StringBuilder percentiles = new StringBuilder();
+			for (int j = 0; j < PERCENTILES.length; ++j)
+				percentiles.append(j > 0 ? "," : "").append(String.format(Locale.ROOT, "%n                %s : %s",
+						json(String.valueOf(PERCENTILES[j])), number(result.getPercentile(PERCENTILES[j]))));
+			StringBuilder raw = new StringBuilder();
+			for (int j = 0; j < result.scores.length; ++j)
+				raw.append(j > 0 ? ", " : "").append(number(result.scores[j]));
+			out.println("        \"primaryMetric\" : {");
+			out.println("            \"score\" : " + number(score) + ",");
+			out.println("            \"scoreError\" : " + number(error) + ",");
+			out.println("            \"scoreConfidence\" : [ " + number(score - error) + ", " + number(score + error) + " ],");
+			out.println("            \"scorePercentiles\" : {" + percentiles);
+			out.println("            },");
+			out.println("            \"scoreUnit\" : \"ops/s\",");
+			out.println("            \"rawData\" : [ [ " + raw + " ] ]");
+			out.println("        },");
+			out.println("        \"secondaryMetrics\" : {");
+			out.println("        }");
+			out.println(i < results.size() - 1 ? "    }," : "    }");
+		}
+		out.println("]");
+		out.close();
+	}
+
+	/**
+	 * @return	path of the java command running this JVM
+	 */
+	private static String javaCommand() {
+		return System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+	}
+
+	/**
+	 * @param text	any text
+	 * @return		the text as a JSON string, in quotes
+	 */
+	private static String json(String text) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : text.toCharArray()) {
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < ' ')
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * @param value		score
+	 * @return			the score as a JSON number, whatever the default locale
+	 */
+	private static String number(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	/**
+	 * Random hands of the given size that are not busted, like the hands
+	 * strategies decide on.
+	 */
+	private static Hand[] hands(int size, SplittableRandom random) {
+		Hand[] hands = new Hand[INPUTS];
+		for (int i = 0; i < INPUTS; ++i) {
+			do {
+				hands[i] = new Hand();
+				for (int j = 0; j < size; ++j)
+					hands[i].addCard(random.nextInt(Card.COUNT));
+			} while (hands[i].getValue() > 21);
+		}
+		return hands;
+	}
+
+	/**
+	 * Benchmarks of the value of a hand.
+	 */
+	private void addHands(SplittableRandom random) {
+		for (int size = 2; size <= 4; ++size) {
+			final Hand[] hands = hands(size, random);
+			add(new Benchmark("Hand.getValue size=" + size) {
+				@Override
+				long run(int ops) {
+					long sum = 0;
+					for (int i = 0; i < ops; ++i)
+						sum += hands[i & (INPUTS - 1)].getValue();
+					return sum;
+				}
+			});
+			add(new Benchmark("Hand.isSoft size=" + size) {
+				@Override
+				long run(int ops) {
+					long sum = 0;
+					for (int i = 0; i < ops; ++i)
+						if (hands[i & (INPUTS - 1)].isSoft())
+							sum++;
+					return sum;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Benchmarks of a deck. Dealing starts with a new deck every 52 cards.
+	 */
+	private void addDecks(final SplittableRandom random) {
+		add(new Benchmark("Deck.new") {
+			@Override
+			long run(int ops) {
+				long sum = 0;
+				for (int i = 0; i < ops; ++i)
+					sum += new Deck().getNextCardId();
+				return sum;
+			}
+		});
+		add(new Benchmark("Deck.shuffle") {
+			private Deck deck = new Deck();
+
+			@Override
+			long run(int ops) {
+				for (int i = 0; i < ops; ++i)
+					deck.shuffle(random);
+				// dealing would shorten the next shuffles, so a new deck is taken
+				long id = deck.getNextCardId();
+				deck = new Deck();
+				return id;
+			}
+		});
+		add(new Benchmark("Deck.getNextCard") {
+			private Deck deck = new Deck();
+			private int dealt;
+
+			@Override
+			long run(int ops) {
+				long sum = 0;
+				for (int i = 0; i < ops; ++i) {
+					if (dealt++ == Card.COUNT) {
+						deck = new Deck();
+						dealt = 1;
+					}
+					sum += deck.getNextCard().getBlackjackValue();
+				}
+				return sum;
+			}
+		});
+	}
+
+	/**
+	 * Benchmarks of a playing strategy on hands of two and three cards
+	 * against every up card.
+	 * @param name		name of the benchmark
+	 */
+	private void addStrategy(String name, final Strategy strategy, SplittableRandom random) {
+		Hand[] two = hands(2, random), three = hands(3, random);
+		final Hand[] hands = new Hand[INPUTS];
+		final int[] dealer = new int[INPUTS];
+		for (int i = 0; i < INPUTS; ++i) {
+			hands[i] = i % 2 == 0 ? two[i] : three[i];
+			dealer[i] = 2 + random.nextInt(10);
+		}
+		add(new Benchmark(name) {
+			@Override
+			long run(int ops) {
+				long sum = 0;
+				for (int i = 0; i < ops; ++i)
+					sum += strategy.playingStrategy(dealer[i & (INPUTS - 1)], hands[i & (INPUTS - 1)]).ordinal();
+				return sum;
+			}
+		});
+	}
+
+	/**
+	 * Benchmark of whole rounds on a headless table with the 'ai' game seats.
+	 */
+	private void addRounds() {
+		add(new Benchmark("Table.playHand") {
+			private Simulator simulator = new Simulator(new Shoe(6, 0.75, new SplittableRandom(SEED)),
+					Simulator.aiSeats());
+
+			@Override
+			long run(int ops) {
+				simulator.run(ops);
+				return simulator.getHands();
+			}
+		});
+	}
+
+	/**
+	 * Main method
+	 * @param args	JSON file (default benchmarks.json) and part of the names of
+	 * 				the benchmarks to run (default all), or --only and the name
+	 * 				of the benchmark run by a child JVM
+	 * @throws IOException when the JSON file cannot be created or a JVM started
+	 * @throws InterruptedException when interrupted while waiting for a JVM
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		SplittableRandom random = new SplittableRandom(SEED);
+		Benchmarks benchmarks = new Benchmarks();
+		benchmarks.addHands(random);
+		benchmarks.addDecks(random);
+		benchmarks.addStrategy("BasicStrategy.playingStrategy", new BasicStrategy(), random);
+		benchmarks.addStrategy("AdvancedStrategy.playingStrategy", new AdvancedStrategy(), random);
+		benchmarks.addStrategy("StrategyTable.playingStrategy strategy=AdvancedStrategy",
+				StrategyTable.compile(new AdvancedStrategy()), random);
+		benchmarks.addRounds();
+
+		if (args.length > 1 && args[0].equals("--only")) {
+			benchmarks.runOnly(args[1]);
+			return;
+		}
+
+		String file = args.length > 0 ? args[0] : "benchmarks.json";
+		String filter = args.length > 1 ? args[1] : "";
+		List<Result> results = benchmarks.fork(filter);
+		writeJson(results, file);
+		System.out.println(String.format("%d results written to %s", results.size(), file));
+	}
+
+}
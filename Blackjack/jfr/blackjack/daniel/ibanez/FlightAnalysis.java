@@ -0,0 +1,220 @@
+package blackjack.daniel.ibanez;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Reads a flight recording of the game and reports the bytes allocated per
+ * hand, the decision latency outliers, the shuffles and history flushes, and
+ * the game events that were running when the garbage collector paused the
+ * program.
+ *
+ * Usage: java blackjack.daniel.ibanez.FlightAnalysis recording.jfr [outliers]
+ *
+ */
+public class FlightAnalysis {
+	private static final String ROUND = "blackjack.Round";
+	private static final String DECISION = "blackjack.Decision";
+	private static final String SHUFFLE = "blackjack.Shuffle";
+	private static final String FLUSH = "blackjack.HistoryFlush";
+	private static final String GC = "jdk.GarbageCollection";
+	private static final String[] PHASES = { ROUND, DECISION, SHUFFLE, FLUSH };
+	private static final long MAX_EVENT = 1000000000;	// longest event looked back for (ns)
+
+	private List<Long> allocated = new ArrayList<Long>();
+	private List<RecordedEvent> decisions = new ArrayList<RecordedEvent>();
+	private List<RecordedEvent> collections = new ArrayList<RecordedEvent>();
+	private Map<String, Intervals> intervals = new HashMap<String, Intervals>();
+	private long shuffles, shuffleNanos;
+	private long flushes, flushNanos, flushRecords;
+
+	/**
+	 * Start and end times of the events of one type, in ns since the epoch.
+	 */
+	private static class Intervals {
+		private long[] starts = new long[1024];
+		private long[] ends = new long[1024];
+		private int size;
+
+		void add(RecordedEvent event) {
+			if (size == starts.length) {
+				starts = Arrays.copyOf(starts, size * 2);
+				ends = Arrays.copyOf(ends, size * 2);
+			}
+			starts[size] = nanos(event.getStartTime().getEpochSecond(), event.getStartTime().getNano());
+			ends[size++] = nanos(event.getEndTime().getEpochSecond(), event.getEndTime().getNano());
+		}
+
+		/**
+		 * Sorts the events by start time.
+		 */
+		void sort() {
+			long[][] pairs = new long[size][];
+			for (int i = 0; i < size; ++i)
+				pairs[i] = new long[] { starts[i], ends[i] };
+			Arrays.sort(pairs, new Comparator<long[]>() {
+				@Override
+				public int compare(long[] a, long[] b) {
+					return Long.compare(a[0], b[0]);
+				}
+			});
+			for (int i = 0; i < size; ++i) {
+				starts[i] = pairs[i][0];
+				ends[i] = pairs[i][1];
+			}
+		}
+
+		/**
+		 * Looks back from the last event starting before the end of the given
+		 * time, for at most MAX_EVENT ns.
+		 * @return	true if an event runs during part of the given time
+		 */
+		boolean overlaps(long start, long end) {
+			int i = Arrays.binarySearch(starts, 0, size, end);
+			i = i < 0 ? -i - 2 : i;		// last event starting before the end
+			for (; i >= 0; --i) {
+				if (ends[i] >= start)
+					return true;
+				if (starts[i] < start - MAX_EVENT)
+					return false;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Reads all events of a recording.
+	 * @param recording		recording file
+	 * @throws IOException when the file cannot be read
+	 */
+	public void read(String recording) throws IOException {
+		for (String phase : PHASES)
+			intervals.put(phase, new Intervals());
+
+		RecordingFile file = new RecordingFile(Paths.get(recording));
+		while (file.hasMoreEvents()) {
+			RecordedEvent event = file.readEvent();
+			String name = event.getEventType().getName();
+			if (intervals.containsKey(name))
+				intervals.get(name).add(event);
+
+			if (name.equals(ROUND))
+				allocated.add(event.getLong("allocated"));
+			else if (name.equals(DECISION))
+				decisions.add(event);
+			else if (name.equals(SHUFFLE)) {
+				shuffles++;
+				shuffleNanos += event.getDuration().toNanos();
+			}
+			else if (name.equals(FLUSH)) {
+				flushes++;
+				flushNanos += event.getDuration().toNanos();
+				flushRecords += event.getInt("records");
+			}
+			else if (name.equals(GC))
+				collections.add(event);
+		}
+		file.close();
+
+		for (Intervals phase : intervals.values())
+			phase.sort();
+	}
+
+	/**
+	 * @param outliers	number of slowest decisions listed
+	 * @return			report of the recording
+	 */
+	public String report(int outliers) {
+		StringBuilder sb = new StringBuilder();
+
+		Collections.sort(allocated);
+		long sum = 0;
+		for (long bytes : allocated)
+			sum += bytes;
+		sb.append(String.format("Rounds: %d%n", allocated.size()));
+		if (!allocated.isEmpty())
+			sb.append(String.format("  Bytes allocated per hand: mean %.1f  p50 %d  p99 %d  max %d%n",
+					(double) sum / allocated.size(), percentile(allocated, 50), percentile(allocated, 99),
+					allocated.get(allocated.size() - 1)));
+
+		sb.append(String.format("Decisions over the threshold: %d%n", decisions.size()));
+		Collections.sort(decisions, new Comparator<RecordedEvent>() {
+			@Override
+			public int compare(RecordedEvent a, RecordedEvent b) {
+				return b.getDuration().compareTo(a.getDuration());
+			}
+		});
+		for (int i = 0; i < Math.min(outliers, decisions.size()); ++i) {
+			RecordedEvent decision = decisions.get(i);
+			sb.append(String.format("  %8.1f us  seat %d  %-32s %-2s hand size %d value %d dealer %d%n",
+					decision.getDuration().toNanos() / 1e3, decision.getInt("seat"),
+					decision.getString("strategy"), decision.getString("strat"), decision.getInt("handSize"),
+					decision.getInt("handValue"), decision.getInt("dealer")));
+		}
+
+		sb.append(String.format("Shuffles: %d  mean %.1f us%n", shuffles,
+				shuffles > 0 ? shuffleNanos / 1e3 / shuffles : 0));
+		sb.append(String.format("History flushes: %d  mean %.1f us  records %d%n", flushes,
+				flushes > 0 ? flushNanos / 1e3 / flushes : 0, flushRecords));
+
+		// game events running during every collection
+		int[] during = new int[PHASES.length];
+		int outside = 0;
+		long pauses = 0;
+		for (RecordedEvent gc : collections) {
+			long start = nanos(gc.getStartTime().getEpochSecond(), gc.getStartTime().getNano());
+			long end = nanos(gc.getEndTime().getEpochSecond(), gc.getEndTime().getNano());
+			pauses += gc.getDuration("sumOfPauses").toNanos();
+			boolean any = false;
+			for (int i = 0; i < PHASES.length; ++i)
+				if (intervals.get(PHASES[i]).overlaps(start, end)) {
+					during[i]++;
+					any = true;
+				}
+			if (!any)
+				outside++;
+		}
+		sb.append(String.format("Garbage collections: %d  paused %.1f ms%n", collections.size(), pauses / 1e6));
+		for (int i = 0; i < PHASES.length; ++i)
+			sb.append(String.format("  during %-22s %d%n", PHASES[i], during[i]));
+		sb.append(String.format("  outside game events     %d%n", outside));
+		return sb.toString();
+	}
+
+	private static long percentile(List<Long> sorted, double percentile) {
+		int index = (int) Math.ceil(sorted.size() * percentile / 100) - 1;
+		return sorted.get(Math.max(0, index));
+	}
+
+	private static long nanos(long seconds, int nanos) {
+		return seconds * 1000000000 + nanos;
+	}
+
+	/**
+	 * Main method
+	 * @param args	recording file and number of slowest decisions listed (default 10)
+	 * @throws IOException when the recording cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java blackjack.daniel.ibanez.FlightAnalysis recording.jfr [outliers]");
+			return;
+		}
+		int outliers = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		FlightAnalysis analysis = new FlightAnalysis();
+		analysis.read(args[0]);
+		System.out.print(analysis.report(outliers));
+	}
+
+}
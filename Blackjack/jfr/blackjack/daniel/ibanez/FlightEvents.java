@@ -0,0 +1,231 @@
+package blackjack.daniel.ibanez;
+
+import java.lang.management.ManagementFactory;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events of the game, loaded by FlightRecorder when the
+ * JVM has a flight recorder. An event is only created when its type is
+ * enabled, so they cost a check of a flag while no recording is running.
+ * The bytes allocated by a hand are read from the HotSpot thread bean; on a
+ * JVM without it these events cannot be loaded and nothing is recorded.
+ *
+ */
+final class FlightEvents extends FlightRecorder {
+	static final String CATEGORY = "Blackjack";
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private final EventType round = EventType.getEventType(RoundEvent.class);
+	private final EventType decision = EventType.getEventType(DecisionEvent.class);
+	private final EventType shuffle = EventType.getEventType(ShuffleEvent.class);
+	private final EventType flush = EventType.getEventType(HistoryFlushEvent.class);
+
+	@Override
+	long allocatedBytes() {
+		long bytes = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+		return Math.max(bytes, 0);
+	}
+
+	@Override
+	Object beginRound() {
+		if ( !round.isEnabled())
+			return null;
+		RoundEvent event = new RoundEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	void commitRound(Object round, long hand, int seats, int dealerCards, long allocated) {
+		RoundEvent event = (RoundEvent) round;
+		event.end();
+		if (event.shouldCommit()) {
+			event.hand = hand;
+			event.seats = seats;
+			event.dealerCards = dealerCards;
+			event.allocated = allocated;
+			event.commit();
+		}
+	}
+
+	@Override
+	Object beginDecision() {
+		if ( !decision.isEnabled())
+			return null;
+		DecisionEvent event = new DecisionEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	void commitDecision(Object decision, int seat, Strategy strategy, Strat strat, int handSize,
+			int handValue, int dealer) {
+		DecisionEvent event = (DecisionEvent) decision;
+		event.end();
+		if (event.shouldCommit()) {
+			event.seat = seat;
+			event.strategy = strategyName(strategy);
+			event.strat = strat.name();
+			event.handSize = handSize;
+			event.handValue = handValue;
+			event.dealer = dealer;
+			event.commit();
+		}
+	}
+
+	@Override
+	Object beginShuffle() {
+		if ( !shuffle.isEnabled())
+			return null;
+		ShuffleEvent event = new ShuffleEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	void commitShuffle(Object shuffle, long hand, int decks, int cardsLeft) {
+		ShuffleEvent event = (ShuffleEvent) shuffle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.hand = hand;
+			event.decks = decks;
+			event.cardsLeft = cardsLeft;
+			event.commit();
+		}
+	}
+
+	@Override
+	Object beginFlush() {
+		if ( !flush.isEnabled())
+			return null;
+		HistoryFlushEvent event = new HistoryFlushEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	void commitFlush(Object flush, int records, long bytes) {
+		HistoryFlushEvent event = (HistoryFlushEvent) flush;
+		event.end();
+		if (event.shouldCommit()) {
+			event.records = records;
+			event.bytes = bytes;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @param strategy	strategy of a player
+	 * @return			class name of the strategy, with the compiled strategy
+	 * 					for a StrategyTable
+	 */
+	private static String strategyName(Strategy strategy) {
+		if (strategy instanceof StrategyTable)
+			return "StrategyTable(" + ((StrategyTable) strategy).getStrategy().getClass().getSimpleName() + ")";
+		return strategy.getClass().getSimpleName();
+	}
+}
+
+/**
+ * A hand played on a Table, from the bets to the settlement. Its duration
+ * includes the time human players, or the clients of a GameServer, take to
+ * decide; the bytes allocated meanwhile by other work are not counted.
+ *
+ */
+@Name("blackjack.Round")
+@Label("Round")
+@Category(FlightEvents.CATEGORY)
+@Description("Hand played on a table, including the time human players take to decide")
+@StackTrace(false)
+class RoundEvent extends Event {
+	@Label("Hand")
+	long hand;
+
+	@Label("Seats")
+	int seats;
+
+	@Label("Dealer Hand Size")
+	int dealerCards;
+
+	@Label("Allocated")
+	@Description("Bytes allocated by the table's thread while playing the hand")
+	@DataAmount
+	long allocated;
+}
+
+/**
+ * Playing decision of a computer player. Only decisions slower than the
+ * threshold are recorded, so the recording holds the outliers.
+ *
+ */
+@Name("blackjack.Decision")
+@Label("Decision")
+@Category(FlightEvents.CATEGORY)
+@Threshold("10 us")
+@StackTrace(false)
+class DecisionEvent extends Event {
+	@Label("Seat")
+	int seat;
+
+	@Label("Strategy")
+	String strategy;
+
+	@Label("Strat")
+	String strat;
+
+	@Label("Hand Size")
+	int handSize;
+
+	@Label("Hand Value")
+	int handValue;
+
+	@Label("Dealer Card")
+	int dealer;
+}
+
+/**
+ * Shuffle of a table's shoe.
+ *
+ */
+@Name("blackjack.Shuffle")
+@Label("Shuffle")
+@Category(FlightEvents.CATEGORY)
+@StackTrace(false)
+class ShuffleEvent extends Event {
+	@Label("Hand")
+	long hand;
+
+	@Label("Decks")
+	int decks;
+
+	@Label("Cards Left")
+	int cardsLeft;
+}
+
+/**
+ * Flush of a hand history file, with the records written since the last one.
+ *
+ */
+@Name("blackjack.HistoryFlush")
+@Label("History Flush")
+@Category(FlightEvents.CATEGORY)
+@StackTrace(false)
+class HistoryFlushEvent extends Event {
+	@Label("Records")
+	int records;
+
+	@Label("Written")
+	@DataAmount
+	long bytes;
+}
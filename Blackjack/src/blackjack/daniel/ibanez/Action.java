@@ -0,0 +1,9 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Enumeration that represents a decision taken by a player during a hand.
+ *
+ */
+enum Action {
+	HIT, STAND, DOUBLE
+}
@@ -10,23 +10,73 @@ enum Suits {
 
 /**
  * Represents a card with value and suit from the standard French deck.
+ * There is only one Card object for each of the 52 cards. Every card is
+ * identified by a number between 0 and 51 (suit * 13 + value - 1), so decks
+ * and hands can hold card ids instead of objects.
  *
  */
 public class Card {
-	private Suits suit;
-	private int value;
-	
+	public static final int COUNT = 52;	// cards in a standard deck
+	private static final Card[] CARDS = new Card[COUNT];
+
+	static {
+		for (Suits suit : Suits.values())
+			for (int value = 1; value < 14; ++value) {
+				Card card = new Card(suit, value);
+				CARDS[card.id] = card;
+			}
+	}
+
+	private final Suits suit;
+	private final int value;
+	private final int id;
+	private final int bjValue;
+	private final String name;
+
+	/**
+	 * @param suit		color of the card is a constant from Suits enumeration
+	 * @param value		number between 1 and 13
+	 */
+	private Card(Suits suit, int value) {
+		this.value = value;
+		this.suit = suit;
+		id = suit.ordinal() * 13 + value - 1;
+
+		// 11 for Ace, 10 for Jack, Queen and King, face value for the rest
+		if (value == 1)
+			bjValue = 11;
+		else if (value > 10)
+			bjValue = 10;
+		else
+			bjValue = value;
+
+		// Shows enumeration value in lower case with first letter capitalized
+		String strSuit = suit.toString();
+		name = strSuit.substring(0, 1) + strSuit.substring(1).toLowerCase() + value;
+	}
+
+	/**
+	 * Returns the card with the given id.
+	 * @param id	number between 0 and 51
+	 * @return		Card object
+	 * @throws ArrayIndexOutOfBoundsException when id is less than 0 or more than 51
+	 */
+	public static Card get(int id) {
+		return CARDS[id];
+	}
+
 	/**
-	 * @param suit		color of the card is a constant from Suits enumeration	
+	 * Returns the card with the given suit and value.
+	 * @param suit		color of the card is a constant from Suits enumeration
 	 * @param value		number between 1 and 13
+	 * @return			Card object
 	 * @throws IllegalArgumentException when value is less that 1 or more that 13
 	 */
-	public Card(Suits suit, int value) throws IllegalArgumentException {
+	public static Card get(Suits suit, int value) throws IllegalArgumentException {
 		if (value < 1 || value > 13)
 			throw new IllegalArgumentException();
 
-		this.value = value;
-		this.suit = suit;
+		return CARDS[suit.ordinal() * 13 + value - 1];
 	}
 
 	/**
@@ -44,32 +94,31 @@ public class Card {
 	public int getValue() {
 		return value;
 	}
-	
+
 	/**
-	 * @return	11 for Ace,	
+	 * Returns the number identifying the card.
+	 * @return	number between 0 and 51
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return	11 for Ace,
 	 * 			10 for Jack, Queen and King.
-	 * 			Face value for the rest 	   
+	 * 			Face value for the rest
 	 */
 	public int getBlackjackValue() {
-		int bjValue = 0;
-		if (value == 1)
-			bjValue = 11;
-		else if (value > 10)
-			bjValue = 10;
-		else
-			bjValue = value;
-		
 		return bjValue;
 	}
-	
+
+	/**
+	 * Returns the name of the card, which is also the name of the png file
+	 * with its image, for example "Hearts12".
+	 */
 	@Override
 	public String toString() {
-		// Shows enumeration value in lower case with first letter capitalized
-		String strSuit = suit.toString().substring(0, 1);
-		strSuit += suit.toString().toLowerCase()
-				.substring(1, suit.toString().length());
-
-		return strSuit + value;	
+		return name;
 	}
 
 }
@@ -0,0 +1,108 @@
+package blackjack.daniel.ibanez;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Images of all cards, the back of a card and the empty silhouette, shared by
+ * all panels. The png files are decoded once, in parallel and off the event
+ * thread, and converted to images compatible with the screen so drawing them
+ * needs no conversion. Panels refer to images by card id, or BACK and EMPTY.
+ *
+ */
+class CardImages {
+	public static final int BACK = Card.COUNT;			// back of a card
+	public static final int EMPTY = Card.COUNT + 1;		// placeholder of an empty seat
+	private static final int IMAGES = Card.COUNT + 2;
+
+	private static volatile List<Future<BufferedImage>> images;
+
+	private CardImages() {
+	}
+
+	/**
+	 * Starts decoding all images in the background. Calling it again does nothing.
+	 */
+	public static synchronized void preload() {
+		if (images != null)
+			return;
+
+		ExecutorService pool = Executors.newFixedThreadPool(
+				Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "card-images");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		final GraphicsConfiguration config = GraphicsEnvironment.isHeadless() ? null :
+			GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+		List<Future<BufferedImage>> decoded = new ArrayList<Future<BufferedImage>>(IMAGES);
+		for (int i = 0; i < IMAGES; ++i) {
+			final String name = i == BACK ? "Back" : i == EMPTY ? "Empty" : Card.get(i).toString();
+			decoded.add(pool.submit(new Callable<BufferedImage>() {
+				@Override
+				public BufferedImage call() throws IOException {
+					return toCompatible(ImageIO.read(CardImages.class.getResource("/" + name + ".png")), config);
+				}
+			}));
+		}
+		pool.shutdown();
+		images = decoded;
+	}
+
+	/**
+	 * Returns an image, waiting for it if it has not been decoded yet.
+	 * @param index		card id, BACK or EMPTY
+	 * @return			image ready to be drawn
+	 */
+	public static BufferedImage get(int index) {
+		if (images == null)
+			preload();
+		try {
+			return images.get(index).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			System.err.println("Error: Unable to load image: " + index);
+			System.exit(1);
+			return null;
+		}
+	}
+
+	/**
+	 * Copies an image to the pixel layout of the screen.
+	 * @param img		decoded image
+	 * @param config	configuration of the screen, null without screen
+	 * @return			image with the same pixels, drawn without conversion
+	 */
+	private static BufferedImage toCompatible(BufferedImage img, GraphicsConfiguration config) {
+		if (config == null || img.getColorModel().equals(config.getColorModel(img.getTransparency())))
+			return img;
+
+		BufferedImage compatible = config.createCompatibleImage(img.getWidth(), img.getHeight(),
+				img.getTransparency() == Transparency.OPAQUE ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+		Graphics2D g = compatible.createGraphics();
+		g.drawImage(img, 0, 0, null);
+		g.dispose();
+		return compatible;
+	}
+
+}
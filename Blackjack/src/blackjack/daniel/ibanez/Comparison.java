@@ -0,0 +1,294 @@
+package blackjack.daniel.ibanez;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Compares strategies on the same cards. Every strategy plays alone on its own
+ * table, and the tables play their hands in step: before every hand all shoes
+ * are shuffled with the same seed, so every strategy is dealt the same cards
+ * in the same order, and only its own decisions change what it draws. The
+ * difference of the money won by a strategy and by the first one, the
+ * baseline, is then taken hand by hand. Luck of the cards cancels out of these
+ * paired differences, so their variance is much lower than that of the
+ * difference of two independent simulations, and far fewer hands separate a
+ * small change of a strategy from noise.
+ *
+ * Like ParallelSimulator, hands are played in blocks with seeds taken in order
+ * from one master seed, and with a target width the comparison stops once the
+ * 95% confidence interval of every paired difference is narrower than it.
+ * Players that run out of money buy in again, like in Simulator. A strategy
+ * that bets a part of its balance, like AdvancedStrategy, bets differently
+ * from the baseline once their balances part, and gains far less from the
+ * pairing than one with fixed bets.
+ *
+ * Usage: java blackjack.daniel.ibanez.Comparison [hands] [width] [seed] [threads] [decks]
+ *
+ */
+public class Comparison {
+	private static final int BLOCK = 10000;	// hands played on one set of tables
+	private static final int ROUND = 64;		// blocks played between checks of the intervals
+
+	private List<String> names = new ArrayList<String>();
+	private List<Supplier<Strategy>> strategies = new ArrayList<Supplier<Strategy>>();
+	private int decks;
+
+	/**
+	 * @param decks		number of decks in the shoe, shuffled before every hand
+	 */
+	public Comparison(int decks) {
+		this.decks = decks;
+	}
+
+	/**
+	 * Adds a strategy to the comparison. The first one is the baseline the
+	 * others are compared with.
+	 * @param name		name in the report
+	 * @param strategy	creates the strategy of a new player, which may be shared
+	 * 					by several players if it keeps no state
+	 */
+	public void enter(String name, Supplier<Strategy> strategy) {
+		names.add(name);
+		strategies.add(strategy);
+	}
+
+	/**
+	 * Plays rounds of ROUND blocks on the given pool until the confidence
+	 * interval of every paired difference is narrower than the given width.
+	 * @param hands		number of hands played at most
+	 * @param width		width of the 95% confidence interval of the differences,
+	 * 					0 to play all hands
+	 * @param seed		master seed
+	 * @param pool		pool playing the blocks
+	 * @return			results of all blocks added together
+	 * @throws IllegalStateException when less than two strategies are entered
+	 */
+	public Result run(long hands, double width, long seed, ForkJoinPool pool) throws IllegalStateException {
+		if (strategies.size() < 2)
+			throw new IllegalStateException("At least two strategies are needed");
+
+		SplittableRandom master = new SplittableRandom(seed);
+		Result result = new Result();
+		while (result.hands < hands && (result.hands == 0 || result.getWidth() > width)) {
+			long round = Math.min((long) ROUND * BLOCK, hands - result.hands);
+			long[] seeds = new long[(int) ((round + BLOCK - 1) / BLOCK)];
+			for (int i = 0; i < seeds.length; ++i)
+				seeds[i] = master.nextLong();
+
+			result.merge(pool.invoke(new Blocks(seeds, round, 0, seeds.length)));
+		}
+		return result;
+	}
+
+	/**
+	 * Plays the hands of one block on one table per strategy.
+	 * @param hands		number of hands
+	 * @param seed		seed of the block
+	 * @return			results of the block
+	 */
+	private Result play(long hands, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		Simulator[] tables = new Simulator[strategies.size()];
+		long[] seeds = new long[1];		// seed of the hand, the same for every table
+		for (int k = 0; k < tables.length; ++k) {
+			PlayerAI player = new PlayerAI(names.get(k), Simulator.BALANCE, strategies.get(k).get());
+			tables[k] = new Simulator(new Shoe(decks, 0, random), player);
+			tables[k].getTable().setSeeds(new LongSupplier() {
+				@Override
+				public long getAsLong() {
+					return seeds[0];
+				}
+			});
+		}
+
+		// results are taken from the simulators' nets, as buying in again changes the tables'
+		Result result = new Result();
+		long[] nets = new long[tables.length];
+		long[] won = new long[tables.length];
+		for (long n = 0; n < hands; ++n) {
+			seeds[0] = random.nextLong();
+			for (int k = 0; k < tables.length; ++k) {
+				tables[k].run(1);
+				won[k] = tables[k].getNet(0) - nets[k];
+				nets[k] += won[k];
+			}
+			for (int k = 1; k < tables.length; ++k)
+				result.differences[k].add(won[k] - won[0], null);
+		}
+		result.hands = hands;
+		for (int k = 0; k < tables.length; ++k)
+			result.returns[k] = tables[k].getStats(0);
+		return result;
+	}
+
+	/**
+	 * Results of a comparison: the money won per hand by every strategy and
+	 * its paired difference with the baseline.
+	 */
+	public class Result {
+		private long hands;
+		private ReturnStats[] returns = new ReturnStats[strategies.size()];
+		private ReturnStats[] differences = new ReturnStats[strategies.size()];	// none for the baseline
+
+		Result() {
+			for (int k = 0; k < returns.length; ++k) {
+				returns[k] = new ReturnStats();
+				differences[k] = new ReturnStats();
+			}
+		}
+
+		/**
+		 * Adds the results of another block to these.
+		 * @param other		results to add
+		 */
+		void merge(Result other) {
+			hands += other.hands;
+			for (int k = 0; k < returns.length; ++k) {
+				returns[k].merge(other.returns[k]);
+				differences[k].merge(other.differences[k]);
+			}
+		}
+
+		/**
+		 * @return	number of hands every strategy played
+		 */
+		public long getHands() {
+			return hands;
+		}
+
+		/**
+		 * @param k		strategy in the order entered
+		 * @return		money won per hand by the strategy
+		 */
+		public ReturnStats getReturns(int k) {
+			return returns[k];
+		}
+
+		/**
+		 * @param k		strategy in the order entered, not the baseline
+		 * @return		money won per hand by the strategy minus that won by the
+		 * 				baseline on the same cards
+		 */
+		public ReturnStats getDifference(int k) {
+			return differences[k];
+		}
+
+		/**
+		 * @param k		strategy in the order entered, not the baseline
+		 * @return		variance of the difference of two independent simulations
+		 * 				divided by that of the paired difference: how many times
+		 * 				more hands the independent simulations would need
+		 */
+		public double getVarianceReduction(int k) {
+			double paired = differences[k].getVariance();
+			double independent = returns[0].getVariance() + returns[k].getVariance();
+			return paired > 0 ? independent / paired : Double.POSITIVE_INFINITY;
+		}
+
+		/**
+		 * @return	widest 95% confidence interval of any paired difference
+		 */
+		public double getWidth() {
+			double width = 0;
+			for (int k = 1; k < differences.length; ++k)
+				width = Math.max(width, differences[k].getWidth());
+			return width;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(String.format("%-16s %-10s %-20s %-10s %-20s %-12s %s%n",
+					"Strategy", "Hands", "EV/hand", "SD", "Diff EV/hand", "Diff var", "Var reduction"));
+			for (int k = 0; k < returns.length; ++k) {
+				sb.append(String.format("%-16s %-10d %-20s %-10.4f ", names.get(k), hands,
+						String.format("%.4f +/- %.4f", returns[k].getMean(),
+								ReturnStats.Z * returns[k].getStandardError()),
+						returns[k].getStandardDeviation()));
+				if (k == 0)
+					sb.append(String.format("%s%n", "baseline"));
+				else
+					sb.append(String.format("%-20s %-12.4f %.1fx%n",
+							String.format("%.4f +/- %.4f", differences[k].getMean(),
+									ReturnStats.Z * differences[k].getStandardError()),
+							differences[k].getVariance(), getVarianceReduction(k)));
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Task that plays a range of blocks, splitting the range in two halves
+	 * until only one block is left.
+	 *
+	 */
+	private class Blocks extends RecursiveTask<Result> {
+		private static final long serialVersionUID = 1L;
+		private long[] seeds;
+		private long hands;
+		private int from, to;
+
+		Blocks(long[] seeds, long hands, int from, int to) {
+			this.seeds = seeds;
+			this.hands = hands;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Result compute() {
+			if (to - from == 1)
+				return play(Math.min(BLOCK, hands - (long) from * BLOCK), seeds[from]);
+
+			int middle = (from + to) >>> 1;
+			Blocks left = new Blocks(seeds, hands, from, middle);
+			left.fork();
+			Result right = new Blocks(seeds, hands, middle, to).compute();
+			Result result = left.join();
+			result.merge(right);
+			return result;
+		}
+	}
+
+	/**
+	 * Main method. Compares the solved strategy and a player that stands on 16
+	 * with the basic strategy.
+	 * @param args	number of hands at most (default 10000000), width of the
+	 * 				confidence interval the comparison stops at (default 0.01),
+	 * 				master seed (default 1), number of threads (default all cores)
+	 * 				and decks in the shoe (default 6)
+	 */
+	public static void main(String[] args) {
+		long hands = args.length > 0 ? Long.parseLong(args[0]) : 10000000;
+		double width = args.length > 1 ? Double.parseDouble(args[1]) : 0.01;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) :
+			Runtime.getRuntime().availableProcessors();
+		int decks = args.length > 4 ? Integer.parseInt(args[4]) : 6;
+
+		// strategies without state are compiled once and shared by all players
+		final Strategy basic = StrategyTable.compile(new BasicStrategy());
+		final Strategy solved = StrategyTable.compile(new StrategySolver(Rules.GAME, decks).solve());
+		final Strategy stand = StrategyTable.compile(new ThresholdStrategy(16));
+
+		Comparison comparison = new Comparison(decks);
+		comparison.enter("Basic", () -> basic);
+		comparison.enter("Solved", () -> solved);
+		comparison.enter("Stand on 16", () -> stand);
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		Result result = comparison.run(hands, width, seed, pool);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		pool.shutdown();
+
+		System.out.print(result);
+		System.out.println(String.format("%d hands per strategy in %.2f s (%.0f hands/s) on %d threads",
+				result.getHands(), seconds, result.getHands() * result.returns.length / seconds, threads));
+	}
+
+}
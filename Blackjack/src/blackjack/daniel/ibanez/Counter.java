@@ -0,0 +1,103 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Keeps the running and true count of a shoe for a counting system. Tags are
+ * looked up by card id, so following a card costs one addition.
+ *
+ * Every card is counted when it leaves the shoe, except the dealer's hidden
+ * card, which is counted when the dealer turns it over.
+ *
+ * A counter follows a shoe as one of its listeners, or a table from another
+ * thread as a reader of the table's EventRing. It must not do both.
+ *
+ */
+public class Counter implements ShoeListener, EventHandler {
+	private TagSystem system;
+	private int[] tags;
+	private int cards;
+	private int initialCount;
+	private int running;
+	private int dealt;
+
+	/**
+	 * @param system	counting system
+	 * @param decks		number of decks in the shoe
+	 */
+	public Counter(TagSystem system, int decks) {
+		this.system = system;
+		tags = new int[Card.COUNT];
+		int deckTotal = 0;
+		for (int id = 0; id < Card.COUNT; ++id) {
+			tags[id] = system.tag(Math.min(Card.get(id).getValue(), 10));
+			deckTotal += tags[id];
+		}
+		cards = decks * Card.COUNT;
+		// unbalanced systems start below 0 so the count ends near 0
+		initialCount = system.isBalanced() ? 0 : -deckTotal * (decks - 1);
+		running = initialCount;
+	}
+
+	@Override
+	public void cardDealt(int cardId) {
+		running += tags[cardId];
+		dealt++;
+	}
+
+	@Override
+	public void shuffled() {
+		running = initialCount;
+		dealt = 0;
+	}
+
+	/**
+	 * Counts the cards of a table's events. Hole cards are counted when they
+	 * are revealed.
+	 */
+	@Override
+	public void onEvent(GameEvent event) {
+		switch (event.getType()) {
+			case CARD:
+			case REVEAL:
+				cardDealt(event.getCard());
+				break;
+			case SHUFFLE:
+				shuffled();
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * @return	sum of the tags of all cards dealt since the shoe was shuffled
+	 */
+	public int getRunningCount() {
+		return running;
+	}
+
+	/**
+	 * Running count per deck left in the shoe. Unbalanced systems use the
+	 * running count as it is.
+	 * @return	true count
+	 */
+	public double getTrueCount() {
+		if (!system.isBalanced())
+			return running;
+		return running / getDecksLeft();
+	}
+
+	/**
+	 * @return	decks not dealt yet, never less than half a deck
+	 */
+	public double getDecksLeft() {
+		return Math.max(cards - dealt, Card.COUNT / 2) / (double) Card.COUNT;
+	}
+
+	/**
+	 * @return	counting system
+	 */
+	public TagSystem getSystem() {
+		return system;
+	}
+
+}
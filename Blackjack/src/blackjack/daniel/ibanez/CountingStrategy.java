@@ -0,0 +1,117 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * 	Strategy of a player counting cards. Bets and decisions can change with
+ * 	the count of the shoe.
+ *
+ */
+public interface CountingStrategy extends Strategy {
+	public TagSystem getTagSystem();
+	public int bettingStrategy(int totalBalance, Counter counter);
+	public Strat playingStrategy(int dealer, Hand playerHand, Counter counter);
+}
+
+/**
+ * 	Class that implements a Hi-Lo counting strategy on top of another strategy.
+ *
+ */
+class HiLoStrategy implements CountingStrategy {
+	private static final int UNIT = 10;		// minimum bet
+	private static final int SPREAD = 8;	// maximum bet in units
+
+	private Strategy strategy;
+
+	/**
+	 * 	Plays AdvancedStrategy when the count gives no reason to deviate.
+	 */
+	public HiLoStrategy() {
+		this(new AdvancedStrategy());
+	}
+
+	/**
+	 * @param strategy	strategy played when the count gives no reason to deviate
+	 */
+	public HiLoStrategy(Strategy strategy) {
+		this.strategy = strategy;
+	}
+
+	@Override
+	public TagSystem getTagSystem() {
+		return Tags.HI_LO;
+	}
+
+	/**
+	 * 	Same as the underlying strategy.
+	 */
+	@Override
+	public int bettingStrategy(int balance) {
+		return strategy.bettingStrategy(balance);
+	}
+
+	/**
+	 * 	Same as the underlying strategy.
+	 */
+	@Override
+	public Strat playingStrategy(int dealer, Hand playerHand) {
+		return strategy.playingStrategy(dealer, playerHand);
+	}
+
+	/**
+	 * 	Bets one unit while the true count is 1 or less, and one more unit for every
+	 * 	true count above that, up to 8 units and never more than the balance.
+	 */
+	@Override
+	public int bettingStrategy(int balance, Counter counter) {
+		int units = (int) counter.getTrueCount();
+		units = Math.max(1, Math.min(SPREAD, units));
+		return Math.max(UNIT, Math.min(units * UNIT, (balance / UNIT) * UNIT));
+	}
+
+	/**
+	 * 	Underlying strategy with the best known index plays for hard totals.
+	 */
+	@Override
+	public Strat playingStrategy(int dealer, Hand playerHand, Counter counter) {
+		Strat strat = strategy.playingStrategy(dealer, playerHand);
+		if (playerHand.isSoftTotal())
+			return strat;
+
+		double count = counter.getTrueCount();
+		switch (playerHand.getValue()) {
+			case 16:
+				if (dealer == 10)
+					return count >= 0 ? Strat.S : Strat.H;
+				if (dealer == 9)
+					return count >= 5 ? Strat.S : Strat.H;
+				break;
+			case 15:
+				if (dealer == 10)
+					return count >= 4 ? Strat.S : Strat.H;
+				break;
+			case 13:
+				if (dealer == 2)
+					return count >= -1 ? Strat.S : Strat.H;
+				break;
+			case 12:
+				if (dealer == 2)
+					return count >= 3 ? Strat.S : Strat.H;
+				if (dealer == 3)
+					return count >= 2 ? Strat.S : Strat.H;
+				if (dealer == 4)
+					return count >= 0 ? Strat.S : Strat.H;
+				break;
+			case 10:
+				if (dealer == 10 || dealer == 11)
+					return count >= 4 ? Strat.Dh : Strat.H;
+				break;
+			case 9:
+				if (dealer == 2)
+					return count >= 1 ? Strat.Dh : Strat.H;
+				if (dealer == 7)
+					return count >= 3 ? Strat.Dh : Strat.H;
+				break;
+		}
+		return strat;
+	}
+
+}
@@ -49,6 +49,13 @@ public class Dealer {
 		return hand.getValue();
 	}
 	
+	/**
+	 * @return	Hand object with the dealer's cards
+	 */
+	public Hand getHand() {
+		return hand;
+	}
+	
 	/**
 	 * 	Removes all cards from the dealer's hand.
 	 */
@@ -0,0 +1,193 @@
+package blackjack.daniel.ibanez;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Probability distribution of the dealer's final hand for a given visible card
+ * and cards left in the shoe. With the rules of the game the dealer plays like
+ * in Table and GameLogic: two cards worth 21 are a blackjack, otherwise he
+ * draws until his hand is worth 17 or more.
+ *
+ * Distributions for finite shoes are kept in a least recently used cache,
+ * one per dealer's card, keyed by the cards left of each rank packed into a
+ * long. A DealerOdds object is not thread safe, every thread needs its own.
+ *
+ */
+public class DealerOdds {
+	public static final int BLACKJACK = 5;	// index of blackjack, 0 - 4 are 17 - 21
+	public static final int BUST = 6;		// index of bust
+	public static final int OUTCOMES = 7;
+
+	private Rules rules;
+	private Lru[] cache;
+	private double[][] infinite;
+	private int[] counts;
+	private int total;
+	private boolean finite;
+	private long hits, misses;
+
+	/**
+	 * Dealer plays with the rules of the game.
+	 * @param capacity	number of distributions kept for every dealer's card
+	 */
+	public DealerOdds(int capacity) {
+		this(Rules.GAME, capacity);
+	}
+
+	/**
+	 * @param rules		table rules
+	 * @param capacity	number of distributions kept for every dealer's card
+	 */
+	public DealerOdds(Rules rules, int capacity) {
+		this.rules = rules;
+		cache = new Lru[11];
+		for (int up = 1; up <= 10; ++up)
+			cache[up] = new Lru(capacity);
+		infinite = new double[11][];
+		counts = new int[11];
+	}
+
+	/**
+	 * Distribution of the dealer's final hand with an infinite deck.
+	 * @param up	rank of dealer's visible card, 1 (Ace) to 10
+	 * @return		probabilities of 17, 18, 19, 20, 21, blackjack and bust.
+	 * 				The array is shared and must not be changed
+	 */
+	public double[] outcomes(int up) {
+		if (infinite[up] == null) {
+			int[] deck = ExpectedValue.shoeCounts(1);
+			System.arraycopy(deck, 0, counts, 0, counts.length);
+			total = Card.COUNT;
+			finite = false;
+			infinite[up] = play(up);
+		}
+		return infinite[up];
+	}
+
+	/**
+	 * Distribution of the dealer's final hand for the cards left in the shoe.
+	 * @param up		rank of dealer's visible card, 1 (Ace) to 10
+	 * @param cards		cards left of each rank, index 1 (Ace) to 10 (ten-valued cards),
+	 * 					not counting the dealer's visible card
+	 * @return			probabilities of 17, 18, 19, 20, 21, blackjack and bust.
+	 * 					The array is shared and must not be changed
+	 */
+	public double[] outcomes(int up, int[] cards) {
+		long key = compositionKey(cards);
+		double[] outcomes = cache[up].get(key);
+		if (outcomes != null) {
+			hits++;
+			return outcomes;
+		}
+
+		misses++;
+		total = 0;
+		for (int rank = 1; rank <= 10; ++rank) {
+			counts[rank] = cards[rank];
+			total += cards[rank];
+		}
+		finite = true;
+		outcomes = play(up);
+		cache[up].put(key, outcomes);
+		return outcomes;
+	}
+
+	/**
+	 * Packs the cards left of each rank into one number, 6 bits for each rank
+	 * from Ace to 9 and 8 bits for ten-valued cards, which is enough for 8 decks.
+	 * @param cards		cards left of each rank, index 1 (Ace) to 10
+	 * @return			number identifying the cards left
+	 */
+	public static long compositionKey(int[] cards) {
+		long key = cards[10];
+		for (int rank = 1; rank < 10; ++rank)
+			key = (key << 6) | cards[rank];
+		return key;
+	}
+
+	private double[] play(int up) {
+		double[] outcomes = new double[OUTCOMES];
+		draw(up, up == 1 ? 1 : 0, 1, 1.0, outcomes);
+		return outcomes;
+	}
+
+	/**
+	 * Follows every card the dealer can draw until he stands or busts.
+	 * @param hard		hand total with every Ace counted as 1
+	 * @param aces		number of Aces in the hand
+	 * @param size		number of cards in the hand
+	 * @param prob		probability of reaching this hand
+	 * @param outcomes	distribution being filled
+	 */
+	private void draw(int hard, int aces, int size, double prob, double[] outcomes) {
+		int value = aces > 0 && hard < 12 ? hard + 10 : hard;
+		if (size == 2 && value == 21) {
+			outcomes[BLACKJACK] += prob;
+			return;
+		}
+		if (value > 21) {
+			outcomes[BUST] += prob;
+			return;
+		}
+		if (value > 17 || (value == 17 && !(rules.dealerHitsSoft17() && hard == 7))) {
+			outcomes[value - 17] += prob;
+			return;
+		}
+		for (int rank = 1; rank <= 10; ++rank) {
+			if (counts[rank] == 0)
+				continue;
+			double p = (double) counts[rank] / total;
+			if (finite) {
+				counts[rank]--;
+				total--;
+			}
+			draw(hard + rank, rank == 1 ? aces + 1 : aces, size + 1, prob * p, outcomes);
+			if (finite) {
+				counts[rank]++;
+				total++;
+			}
+		}
+	}
+
+	/**
+	 * @return	table rules
+	 */
+	public Rules getRules() {
+		return rules;
+	}
+
+	/**
+	 * @return	number of finite shoe distributions found in the cache
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return	number of finite shoe distributions that had to be computed
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Map that drops the least recently used distribution when it is full.
+	 *
+	 */
+	private static class Lru extends LinkedHashMap<Long, double[]> {
+		private static final long serialVersionUID = 1L;
+		private int capacity;
+
+		Lru(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, double[]> eldest) {
+			return size() > capacity;
+		}
+	}
+
+}
@@ -4,11 +4,7 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
-import java.util.ArrayList;
 
-import javax.imageio.ImageIO;
 import javax.swing.BoxLayout;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -37,7 +33,7 @@ class DealerPanel extends JPanel {
 		name = new JLabel("Dealer");
 		name.setFont(new Font("Arial", Font.PLAIN, 20));
 		add(name); 
-		cardHidden = true; // one card is hidden
+		setCardHidden(true); // one card is hidden
 	}
 	
 	/**
@@ -60,20 +56,11 @@ class DealerPanel extends JPanel {
 	}
 
 	/**
-	 * Adds a card image to the list of cards images that represents
-	 * the dealer's hand.
-	 * @param cardName		name of the png file containing the graphical
-	 * 						representation of the card
+	 * Changes the card images that represent the dealer's hand.
+	 * @param cards		card ids, CardImages.BACK or CardImages.EMPTY
 	 */
-	public void addCard(String cardName) {
-		cardPanel.addCard(cardName);
-	}
-
-	/**
-	 * Removes all card images from the list representing the dealer's hand
-	 */
-	public void removeCards() {
-		cardPanel.clearCardPanel();
+	public void setCards(int[] cards) {
+		cardPanel.setCards(cards);
 	}
 
 	/**
@@ -84,6 +71,7 @@ class DealerPanel extends JPanel {
 	 */
 	public void setCardHidden(boolean hidden) {
 		cardHidden = hidden;
+		cardPanel.setFirstHidden(hidden);
 	}
 	
 	/**
@@ -106,62 +94,38 @@ class DealerPanel extends JPanel {
 	 */
 	class CardPanel extends JPanel {
 		private static final long serialVersionUID = 1L;
-		private ArrayList<BufferedImage> cardImages;
+		private HandImage hand;
 		
 		public CardPanel() {
-			cardImages = new ArrayList<BufferedImage>();
+			hand = new HandImage();
 			setBackground(new Color(50, 160, 100)); // green
 		}
 		
 		/**
-		 * Adds a card image to the list of cards images that represent
-		 * the dealer's hand.
-		 * @param cardName		name of the png file containing the graphical
-		 * 						representation of the card
+		 * Changes the card images that represent the dealer's hand and repaints
+		 * the panel if they are different.
+		 * @param cards		card ids, CardImages.BACK or CardImages.EMPTY
 		 */
-		public void addCard(String cardName) {
-			BufferedImage img = null;
-			try {
-				img = ImageIO.read(getClass().getResource("/" + cardName + ".png"));
-			} catch (IOException ex) {
-				System.err.println("Error: Unable to load image: " +  cardName);
-				System.exit(1);
-			}
-			cardImages.add(img);
+		public void setCards(int[] cards) {
+			if (hand.set(cards))
+				repaint();
 		}
 		
 		/**
-		 * Draws overlapped cards
+		 * Draws overlapped cards from the image of the hand, drawn again only when
+		 * the hand changes
 		 */
 		protected void paintComponent(Graphics g) {
 			super.paintComponent(g);
-			int overlap = 0;
-			if (cardImages.size() > 0)
-				overlap = cardImages.get(0).getWidth() / 6;
-		
-			for (int i = 0; i < cardImages.size(); i++) {
-				if (cardHidden && i == 0) {
-					BufferedImage img = null;
-					try {
-						img = ImageIO.read(getClass().getResource("/Back.png"));
-					} catch (IOException ex) {
-						System.err.println("Error: Unable to load image: Back.png");
-						System.exit(1);
-					}
-					g.drawImage(img, 0, 0, this);
-				}
-				else {
-					int x = overlap * i;
-					g.drawImage(cardImages.get(i), x, 0, this);
-				}
-			}
+			hand.paint(g);
 		}
 		
 		/**
-		 * Removes card images from list representing the dealer's hand
+		 * @param hidden	true if the first card is drawn on its back
 		 */
-		public void clearCardPanel() {
-			cardImages.clear();
+		public void setFirstHidden(boolean hidden) {
+			if (hand.setFirstHidden(hidden))
+				repaint();
 		}
 		
 		public Dimension getPreferredSize() {
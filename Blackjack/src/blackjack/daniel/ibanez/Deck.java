@@ -1,50 +1,77 @@
 package blackjack.daniel.ibanez;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Class representing the standard French deck of 52 cards.
- * 
+ * The deck holds card ids and deals them by moving a cursor.
+ *
  */
 public class Deck {
 
-	private ArrayList<Card> deck;	
-	
+	private byte[] deck;
+	private int next;
+
 	public Deck() {
-		deck = new ArrayList<Card>(52);	// Standard 52-card deck
-		for (Suits suit : Suits.values())
-			for (int value = 1; value < 14; ++value) 
-				deck.add(new Card(suit, value));	
+		deck = new byte[Card.COUNT];	// Standard 52-card deck
+		for (int id = 0; id < Card.COUNT; ++id)
+			deck[id] = (byte) id;
 	}
 
 	/**
 	 * Returns the first card and removes it from the deck.
-	 * @return	Card reference to the first card in the list
+	 * @return	Card reference to the first card in the deck,
+	 * 			null if the deck is empty
 	 */
 	public Card getNextCard() {
-		Card card = null;
-		if (deck.size() > 0) {
-			card = deck.get(0);
-			deck.remove(0);
-		}
-		return card;
+		if (next < deck.length)
+			return Card.get(deck[next++]);
+		return null;
 	}
-	
+
+	/**
+	 * Returns the id of the first card and removes it from the deck.
+	 * @return	card id, -1 if the deck is empty
+	 */
+	public int getNextCardId() {
+		if (next < deck.length)
+			return deck[next++];
+		return -1;
+	}
+
 	/**
 	 * Shuffles the cards in the deck.
 	 */
 	public void shuffle() {
-		Collections.shuffle(deck);
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = deck.length - 1; i > next; --i)
+			swap(i, next + random.nextInt(i - next + 1));
+	}
+
+	/**
+	 * Shuffles the cards in the deck using the given random generator, so the
+	 * order of the cards can be reproduced from its seed.
+	 * @param random	random generator
+	 */
+	public void shuffle(SplittableRandom random) {
+		for (int i = deck.length - 1; i > next; --i)
+			swap(i, next + random.nextInt(i - next + 1));
+	}
+
+	private void swap(int i, int j) {
+		byte id = deck[i];
+		deck[i] = deck[j];
+		deck[j] = id;
 	}
 
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
-		for (Card card : deck)
-			sb.append(card.toString() + "\n");
-		
+		for (int i = next; i < deck.length; ++i)
+			sb.append(Card.get(deck[i]).toString() + "\n");
+
 		return sb.toString();
 	}
-	
+
 }
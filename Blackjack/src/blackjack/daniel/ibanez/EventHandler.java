@@ -0,0 +1,13 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Receives the events read from an EventRing.
+ *
+ */
+public interface EventHandler {
+	/**
+	 * Called for every event in the order they were published.
+	 * @param event		event, only valid until the method returns
+	 */
+	public void onEvent(GameEvent event);
+}
@@ -0,0 +1,109 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Writes the hands of a table to a HandHistory from the table's EventRing, so
+ * the table's thread only publishes events and never formats text. Every hand
+ * is one line with the cards and status of the dealer and of every seat, and
+ * the settlement of the seats that played:
+ *
+ * <pre>
+ *   Hand 42  Dealer: Spades10 Hearts7 STAND  Hal: Clubs5 Diamonds9 Hearts3 STAND PLAYER bet 10 balance 60 ...
+ * </pre>
+ *
+ */
+public class EventHistory implements EventHandler {
+	private static final String NEW_LINE = System.getProperty("line.separator");
+
+	private HandHistory history;
+	private String[] names;
+	private StringBuilder[] cards;		// dealer first, then seat 0, 1...
+	private Status[] status;
+	private Winner[] winners;
+	private int[] bets;
+	private int[] balances;
+	private StringBuilder line = new StringBuilder();
+
+	/**
+	 * @param history	history the hands are written to
+	 * @param names		names of the players, seat 0 first
+	 */
+	public EventHistory(HandHistory history, String... names) {
+		this.history = history;
+		this.names = names;
+		cards = new StringBuilder[names.length + 1];
+		for (int i = 0; i < cards.length; ++i)
+			cards[i] = new StringBuilder();
+		status = new Status[cards.length];
+		winners = new Winner[cards.length];
+		bets = new int[cards.length];
+		balances = new int[cards.length];
+	}
+
+	@Override
+	public void onEvent(GameEvent event) {
+		int i = event.getSeat() + 1;	// the dealer's seat is -1
+		switch (event.getType()) {
+			case HAND_START:
+				for (int j = 0; j < cards.length; ++j) {
+					status[j] = null;
+					winners[j] = null;
+				}
+				clearCards();
+				break;
+			case SHUFFLE:
+				// the cards on the table are published again after a shuffle
+				clearCards();
+				break;
+			case CARD:
+			case HOLE_CARD:
+				if (i < cards.length)
+					cards[i].append(' ').append(Card.get(event.getCard()));
+				break;
+			case STATUS:
+				if (i < cards.length)
+					status[i] = event.getStatus();
+				break;
+			case SETTLEMENT:
+				if (i < cards.length) {
+					winners[i] = event.getWinner();
+					bets[i] = event.getBet();
+					balances[i] = event.getBalance();
+				}
+				break;
+			case HAND_END:
+				history.add(handText(event.getHand()));
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Forgets the cards of the dealer and of every seat.
+	 */
+	private void clearCards() {
+		for (StringBuilder seat : cards)
+			seat.setLength(0);
+	}
+
+	/**
+	 * @param hand	number of the hand that has ended
+	 * @return		line of the hand
+	 */
+	private String handText(long hand) {
+		line.setLength(0);
+		line.append("Hand ").append(hand);
+		for (int i = 0; i < cards.length; ++i) {
+			if (i > 0 && cards[i].length() == 0)
+				continue;	// seat did not play
+			line.append("  ").append(i == 0 ? "Dealer" : names[i - 1]).append(':').append(cards[i]);
+			if (status[i] != null)
+				line.append(' ').append(status[i]);
+			if (winners[i] != null)
+				line.append(' ').append(winners[i]).append(" bet ").append(bets[i])
+					.append(" balance ").append(balances[i]);
+		}
+		return line.append(NEW_LINE).toString();
+	}
+
+}
@@ -0,0 +1,318 @@
+package blackjack.daniel.ibanez;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ring buffer of GameEvents written by one producer, the table, and read by any
+ * number of readers, each at its own pace. The events are allocated once and
+ * filled again, so publishing creates no garbage. The producer waits when it
+ * is a whole ring ahead of the slowest reader; readers never block the producer
+ * otherwise.
+ *
+ * Only one thread may publish at a time. Readers should subscribe before
+ * events are published, they only see the events published after subscribing.
+ * A Counter and an EventHistory are readers of the table's events. Only
+ * headless Tables publish, the Swing game updates its Gui directly (see GameEvent).
+ *
+ * Usage: java blackjack.daniel.ibanez.EventRing [hands] [history file] [capacity]
+ *
+ */
+public class EventRing {
+	private final GameEvent[] events;
+	private final int mask;
+	private final AtomicLong cursor = new AtomicLong(-1);	// last event published
+	private volatile Reader[] readers = new Reader[0];
+	private long next;			// next event to publish, producer only
+	private long gate = -1;		// slowest reader when last looked at, producer only
+
+	/**
+	 * @param capacity	number of events, a power of two
+	 * @throws IllegalArgumentException when capacity is not a power of two
+	 */
+	public EventRing(int capacity) throws IllegalArgumentException {
+		if (capacity < 1 || Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		events = new GameEvent[capacity];
+		for (int i = 0; i < capacity; ++i)
+			events[i] = new GameEvent();
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Adds a reader that gets every event published from now on.
+	 * @return	new reader
+	 */
+	public synchronized Reader subscribe() {
+		Reader reader = new Reader(cursor.get());
+		Reader[] copy = Arrays.copyOf(readers, readers.length + 1);
+		copy[readers.length] = reader;
+		readers = copy;
+		return reader;
+	}
+
+	/**
+	 * Removes a reader, so the producer does not wait for it any longer.
+	 * @param reader	reader returned by subscribe
+	 */
+	public synchronized void unsubscribe(Reader reader) {
+		Reader[] copy = new Reader[readers.length];
+		int n = 0;
+		for (Reader r : readers)
+			if (r != reader)
+				copy[n++] = r;
+		readers = Arrays.copyOf(copy, n);
+	}
+
+	/**
+	 * @param hand	number of the hand that starts
+	 */
+	public void handStart(long hand) {
+		claim(EventType.HAND_START, hand);
+		publish();
+	}
+
+	/**
+	 * @param hand	number of the hand before which the shoe is shuffled
+	 */
+	public void shuffle(long hand) {
+		claim(EventType.SHUFFLE, hand);
+		publish();
+	}
+
+	/**
+	 * @param hand	hand number
+	 * @param seat	player index or GameEvent.DEALER
+	 * @param card	id of the card dealt
+	 */
+	public void card(long hand, int seat, int card) {
+		GameEvent e = claim(EventType.CARD, hand);
+		e.seat = seat;
+		e.card = card;
+		publish();
+	}
+
+	/**
+	 * @param hand	hand number
+	 * @param card	id of the dealer's card dealt face down
+	 */
+	public void holeCard(long hand, int card) {
+		GameEvent e = claim(EventType.HOLE_CARD, hand);
+		e.seat = GameEvent.DEALER;
+		e.card = card;
+		publish();
+	}
+
+	/**
+	 * @param hand	hand number
+	 * @param card	id of the dealer's card turned over
+	 */
+	public void reveal(long hand, int card) {
+		GameEvent e = claim(EventType.REVEAL, hand);
+		e.seat = GameEvent.DEALER;
+		e.card = card;
+		publish();
+	}
+
+	/**
+	 * @param hand		hand number
+	 * @param seat		player index
+	 * @param action	decision taken by the player
+	 */
+	public void action(long hand, int seat, Action action) {
+		GameEvent e = claim(EventType.ACTION, hand);
+		e.seat = seat;
+		e.action = action;
+		publish();
+	}
+
+	/**
+	 * @param hand		hand number
+	 * @param seat		player index or GameEvent.DEALER
+	 * @param status	new status
+	 */
+	public void status(long hand, int seat, Status status) {
+		GameEvent e = claim(EventType.STATUS, hand);
+		e.seat = seat;
+		e.status = status;
+		publish();
+	}
+
+	/**
+	 * @param hand		hand number
+	 * @param seat		player index
+	 * @param winner	winner of the hand for the seat
+	 * @param bet		money bet, doubled bets included
+	 * @param balance	balance after the balance update
+	 */
+	public void settlement(long hand, int seat, Winner winner, int bet, int balance) {
+		GameEvent e = claim(EventType.SETTLEMENT, hand);
+		e.seat = seat;
+		e.winner = winner;
+		e.bet = bet;
+		e.balance = balance;
+		publish();
+	}
+
+	/**
+	 * @param hand	number of the hand that has been settled
+	 */
+	public void handEnd(long hand) {
+		claim(EventType.HAND_END, hand);
+		publish();
+	}
+
+	/**
+	 * Takes the next slot of the ring, waiting until every reader has read the
+	 * event it held.
+	 */
+	private GameEvent claim(EventType type, long hand) {
+		long wrap = next - events.length;
+		if (wrap > gate) {
+			gate = slowestReader();
+			while (wrap > gate) {
+				LockSupport.parkNanos(1);
+				gate = slowestReader();
+			}
+		}
+		GameEvent e = events[(int) next & mask];
+		e.type = type;
+		e.hand = hand;
+		return e;
+	}
+
+	/**
+	 * Makes the event taken last visible to the readers.
+	 */
+	private void publish() {
+		cursor.lazySet(next++);
+	}
+
+	private long slowestReader() {
+		long min = next - 1;
+		for (Reader reader : readers)
+			min = Math.min(min, reader.sequence.get());
+		return min;
+	}
+
+	/**
+	 * Reads the events of a ring in order, independently of the other readers.
+	 * A reader is used by one thread.
+	 */
+	public class Reader {
+		private final AtomicLong sequence;		// last event read
+
+		private Reader(long start) {
+			sequence = new AtomicLong(start);
+		}
+
+		/**
+		 * Hands the events published since the last call to a handler.
+		 * @param handler	handler of the events
+		 * @param max		most events handled in this call
+		 * @return			number of events handled
+		 */
+		public int poll(EventHandler handler, int max) {
+			long read = sequence.get();
+			long available = Math.min(cursor.get(), read + max);
+			for (long seq = read + 1; seq <= available; ++seq)
+				handler.onEvent(events[(int) seq & mask]);
+			sequence.lazySet(available);
+			return (int) (available - read);
+		}
+
+		/**
+		 * Handles events on a new daemon thread until the thread is interrupted.
+		 * @param handler	handler of the events
+		 * @param name		name of the thread
+		 * @return			started thread
+		 */
+		public Thread start(final EventHandler handler, String name) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					while (!Thread.currentThread().isInterrupted())
+						if (poll(handler, events.length) == 0)
+							LockSupport.parkNanos(50000);	// nothing new, wait 50 us
+					poll(handler, Integer.MAX_VALUE);		// what is left
+				}
+			}, name);
+			thread.setDaemon(true);
+			thread.start();
+			return thread;
+		}
+	}
+
+	/**
+	 * Plays hands on a headless table without events, with events and no
+	 * readers, and with three readers: a Hi-Lo Counter, one adding up the
+	 * settlements and an EventHistory. Prints the time taken by all three, and
+	 * checks the readers against the table: the counter against a counter
+	 * following the shoe, the settlements against the simulator.
+	 * @param args	number of hands (default 2000000), history file (default
+	 * 				Events.txt) and ring capacity (default 4096)
+	 * @throws InterruptedException when interrupted while waiting for the readers
+	 * @throws IOException when the history file cannot be created
+	 */
+	public static void main(String[] args) throws InterruptedException, IOException {
+		long hands = args.length > 0 ? Long.parseLong(args[0]) : 2000000;
+		File historyFile = new File(args.length > 1 ? args[1] : "Events.txt");
+		int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+
+		Simulator plain = new Simulator(new Shoe(6, 0.75, new SplittableRandom(1)), Simulator.aiSeats());
+		long start = System.nanoTime();
+		plain.run(hands);
+		double plainSeconds = (System.nanoTime() - start) / 1e9;
+
+		Simulator unread = new Simulator(new Shoe(6, 0.75, new SplittableRandom(1)), Simulator.aiSeats());
+		unread.getTable().setEvents(new EventRing(capacity));
+		start = System.nanoTime();
+		unread.run(hands);
+		double unreadSeconds = (System.nanoTime() - start) / 1e9;
+
+		Simulator published = new Simulator(new Shoe(6, 0.75, new SplittableRandom(1)), Simulator.aiSeats());
+		Table table = published.getTable();
+		Counter shoeCounter = new Counter(Tags.HI_LO, 6);
+		table.getShoe().addListener(shoeCounter);
+		String[] names = new String[table.getSeats()];
+		for (int i = 0; i < names.length; ++i)
+			names[i] = table.getPlayer(i).getName();
+
+		EventRing ring = new EventRing(capacity);
+		Counter counter = new Counter(Tags.HI_LO, 6);
+		final long[] net = new long[names.length];
+		HandHistory history = new HandHistory(historyFile, 1024, 1000, Long.MAX_VALUE, Long.MAX_VALUE);
+		Thread counting = ring.subscribe().start(counter, "counting");
+		Thread settling = ring.subscribe().start(new EventHandler() {
+			@Override
+			public void onEvent(GameEvent event) {
+				if (event.getType() == EventType.SETTLEMENT && event.getWinner() != Winner.DEALER)
+					net[event.getSeat()] += event.getWinner() == Winner.PLAYER ? event.getBet() : 0;
+				else if (event.getType() == EventType.SETTLEMENT)
+					net[event.getSeat()] -= event.getBet();
+			}
+		}, "settlement");
+		Thread writing = ring.subscribe().start(new EventHistory(history, names), "history");
+
+		table.setEvents(ring);
+		start = System.nanoTime();
+		published.run(hands);
+		double ringSeconds = (System.nanoTime() - start) / 1e9;
+		for (Thread reader : new Thread[] { counting, settling, writing }) {
+			reader.interrupt();
+			reader.join();
+		}
+		history.close();
+
+		System.out.print(published);
+		System.out.println(String.format("Net from settlement events: %s  Running count: %d (shoe %d)",
+				Arrays.toString(net), counter.getRunningCount(), shoeCounter.getRunningCount()));
+		System.out.println(String.format("%d hands: %.2f s without events, %.2f s without readers, "
+				+ "%.2f s with 3 readers", hands, plainSeconds, unreadSeconds, ringSeconds));
+	}
+
+}
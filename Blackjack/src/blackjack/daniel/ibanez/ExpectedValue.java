@@ -0,0 +1,283 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Computes the exact expected return of a playing strategy for one player
+ * against the dealer, as a fraction of the initial bet. The rules are the
+ * ones of Table and GameLogic: dealer stands on 17 or more, a player's
+ * blackjack always wins, the dealer's blackjack beats every other hand,
+ * wins pay 1 to 1 and a double down doubles the bet for one last card.
+ * Other rules can be given through the DealerOdds used for the calculation.
+ *
+ * Cards can be drawn from an infinite deck, where the chance of every card
+ * never changes, or from a finite shoe, where every card dealt is removed.
+ * The dealer's hidden card is unknown to the player, so it can be drawn
+ * after the player's cards without changing the result.
+ *
+ */
+public class ExpectedValue {
+	private static final int CACHE = 100000;	// dealer distributions kept per dealer's card
+
+	private Strategy strategy;
+	private int[] counts;	// cards left of each rank, 1 (Ace) to 10 (ten, jack, queen, king)
+	private int total;
+	private boolean infinite;
+	private DealerOdds dealerOdds;
+
+	/**
+	 * @param strategy		strategy to evaluate
+	 * @param counts		number of cards of each rank in the shoe, index 1 (Ace) to 10
+	 * @param infinite		true if cards are not removed when they are dealt
+	 * @param dealerOdds	distributions of the dealer's final hand
+	 */
+	private ExpectedValue(Strategy strategy, int[] counts, boolean infinite, DealerOdds dealerOdds) {
+		this.strategy = strategy;
+		this.counts = counts.clone();
+		for (int rank = 1; rank <= 10; ++rank)
+			total += counts[rank];
+		this.infinite = infinite;
+		this.dealerOdds = dealerOdds;
+	}
+
+	/**
+	 * Expected return with an infinite deck.
+	 * @param strategy	strategy to evaluate
+	 * @return			expected money won per unit bet
+	 */
+	public static double infiniteDeck(Strategy strategy) {
+		return infiniteDeck(strategy, new DealerOdds(1));
+	}
+
+	/**
+	 * Expected return with an infinite deck.
+	 * @param strategy		strategy to evaluate
+	 * @param dealerOdds	distributions of the dealer's final hand with the table rules
+	 * @return				expected money won per unit bet
+	 */
+	public static double infiniteDeck(Strategy strategy, DealerOdds dealerOdds) {
+		return new ExpectedValue(strategy, shoeCounts(1), true, dealerOdds).evaluate();
+	}
+
+	/**
+	 * Expected return for the first hand of a freshly shuffled shoe.
+	 * @param strategy	strategy to evaluate
+	 * @param decks		number of decks in the shoe
+	 * @return			expected money won per unit bet
+	 */
+	public static double shoe(Strategy strategy, int decks) {
+		return composition(strategy, shoeCounts(decks));
+	}
+
+	/**
+	 * Expected return for the next hand dealt from a shoe with the given cards.
+	 * @param strategy	strategy to evaluate
+	 * @param counts	number of cards of each rank, index 1 (Ace) to 10 (ten-valued cards)
+	 * @return			expected money won per unit bet
+	 */
+	public static double composition(Strategy strategy, int[] counts) {
+		return composition(strategy, counts, new DealerOdds(CACHE));
+	}
+
+	/**
+	 * Expected return for the next hand dealt from a shoe with the given cards,
+	 * sharing dealer distributions with other calculations.
+	 * @param strategy		strategy to evaluate
+	 * @param counts		number of cards of each rank, index 1 (Ace) to 10 (ten-valued cards)
+	 * @param dealerOdds	cache of dealer distributions with the table rules, only used by this thread
+	 * @return				expected money won per unit bet
+	 */
+	public static double composition(Strategy strategy, int[] counts, DealerOdds dealerOdds) {
+		return new ExpectedValue(strategy, counts, false, dealerOdds).evaluate();
+	}
+
+	/**
+	 * @param decks		number of decks
+	 * @return			number of cards of each rank in a full shoe, index 1 (Ace) to 10
+	 */
+	static int[] shoeCounts(int decks) {
+		int[] counts = new int[11];
+		for (int rank = 1; rank < 10; ++rank)
+			counts[rank] = 4 * decks;
+		counts[10] = 16 * decks;
+		return counts;
+	}
+
+	/**
+	 * Goes through every possible first two cards of the player and dealer's card.
+	 */
+	private double evaluate() {
+		double ev = 0;
+		for (int first = 1; first <= 10; ++first) {
+			double p1 = draw(first);
+			if (p1 == 0)
+				continue;
+			for (int second = 1; second <= 10; ++second) {
+				double p2 = draw(second);
+				if (p2 == 0)
+					continue;
+				for (int up = 1; up <= 10; ++up) {
+					double p3 = draw(up);
+					if (p3 == 0)
+						continue;
+					Hand hand = new Hand();
+					hand.addCard(card(first));
+					hand.addCard(card(second));
+					ev += p1 * p2 * p3 * playHand(hand, up);
+					putBack(up);
+				}
+				putBack(second);
+			}
+			putBack(first);
+		}
+		return ev;
+	}
+
+	/**
+	 * Expected return of a hand with its first two cards.
+	 * @param hand		player's hand
+	 * @param up		rank of dealer's visible card
+	 */
+	private double playHand(Hand hand, int up) {
+		if (hand.getValue() == 21)
+			return dealerOdds.getRules().getBlackjackPays();	// blackjack always wins
+		return decide(hand, up, true);
+	}
+
+	/**
+	 * Expected return of a hand that is still alive, following the strategy.
+	 * @param hand			player's hand
+	 * @param up			rank of dealer's visible card
+	 * @param firstMove		true if player can still double down
+	 */
+	private double decide(Hand hand, int up, boolean firstMove) {
+		Strat strat = strategy.playingStrategy(up == 1 ? 11 : up, hand);
+		switch (strat) {
+			case S:
+				return stand(hand.getValue(), up);
+			case Dh:
+				return firstMove && canDouble() ? doubleDown(hand, up) : hit(hand, up);
+			case Ds:
+				return firstMove && canDouble() ? doubleDown(hand, up) : stand(hand.getValue(), up);
+			default:
+				return hit(hand, up);
+		}
+	}
+
+	private boolean canDouble() {
+		return dealerOdds.getRules().doubleIsAllowed();
+	}
+
+	/**
+	 * Expected return after taking one more card and going on with the strategy.
+	 */
+	private double hit(Hand hand, int up) {
+		double ev = 0;
+		for (int rank = 1; rank <= 10; ++rank) {
+			double p = draw(rank);
+			if (p == 0)
+				continue;
+			Hand next = copy(hand, rank);
+			if (next.getValue() > 21)
+				ev -= p;
+			else if (next.getValue() == 21)
+				ev += p * stand(21, up);
+			else
+				ev += p * decide(next, up, false);
+			putBack(rank);
+		}
+		return ev;
+	}
+
+	/**
+	 * Expected return after doubling the bet and taking one last card.
+	 */
+	private double doubleDown(Hand hand, int up) {
+		double ev = 0;
+		for (int rank = 1; rank <= 10; ++rank) {
+			double p = draw(rank);
+			if (p == 0)
+				continue;
+			Hand next = copy(hand, rank);
+			if (next.getValue() > 21)
+				ev -= p;
+			else
+				ev += p * stand(next.getValue(), up);
+			putBack(rank);
+		}
+		return 2 * ev;
+	}
+
+	/**
+	 * Expected return of a player standing with the given value.
+	 */
+	private double stand(int value, int up) {
+		double[] dealer = infinite ? dealerOdds.outcomes(up) : dealerOdds.outcomes(up, counts);
+		double ev = dealer[DealerOdds.BUST] - dealer[DealerOdds.BLACKJACK];
+		for (int i = 0; i < 5; ++i) {
+			if (value > 17 + i)
+				ev += dealer[i];
+			else if (value < 17 + i)
+				ev -= dealer[i];
+		}
+		return ev;
+	}
+
+	/**
+	 * Removes a card of the given rank from the shoe. When the probability is
+	 * not 0, the card must be put back with putBack.
+	 * @return	probability of drawing that card
+	 */
+	private double draw(int rank) {
+		double p = (double) counts[rank] / total;
+		if (!infinite && p > 0) {
+			counts[rank]--;
+			total--;
+		}
+		return p;
+	}
+
+	/**
+	 * Puts back a card removed by draw.
+	 */
+	private void putBack(int rank) {
+		if (!infinite) {
+			counts[rank]++;
+			total++;
+		}
+	}
+
+	/**
+	 * Returns a copy of a hand with one more card of the given rank.
+	 */
+	private Hand copy(Hand hand, int rank) {
+		Hand next = new Hand();
+		for (int i = 0; i < hand.getSize(); ++i)
+			next.addCard(hand.getCardAt(i));
+		next.addCard(card(rank));
+		return next;
+	}
+
+	private static Card card(int rank) {
+		return Card.get(Suits.SPADES, rank);
+	}
+
+	/**
+	 * Prints the expected return of BasicStrategy and AdvancedStrategy. Both
+	 * share the same dealer distributions.
+	 */
+	public static void main(String[] args) {
+		Strategy[] strategies = { new BasicStrategy(), new AdvancedStrategy() };
+		DealerOdds dealerOdds = new DealerOdds(CACHE);
+		for (Strategy strategy : strategies) {
+			long start = System.nanoTime();
+			double infinite = infiniteDeck(strategy);
+			double single = composition(strategy, shoeCounts(1), dealerOdds);
+			double six = composition(strategy, shoeCounts(6), dealerOdds);
+			System.out.println(String.format("%-20s infinite: %8.5f  1 deck: %8.5f  6 decks: %8.5f  (%d ms)",
+					strategy.getClass().getSimpleName(), infinite, single, six,
+					(System.nanoTime() - start) / 1000000));
+		}
+		System.out.println(String.format("Dealer distributions: %d computed, %d from cache",
+				dealerOdds.getMisses(), dealerOdds.getHits()));
+	}
+
+}
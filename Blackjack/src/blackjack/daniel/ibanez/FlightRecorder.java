@@ -0,0 +1,114 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Records the game in the Java Flight Recorder when it can. The events are
+ * FlightEvents, in the jfr source folder, which needs the jdk.jfr API of JDK
+ * 11 or 8u262 and later. When they are not on the class path or the JVM has no
+ * flight recorder, this recorder is used instead and records nothing, so the
+ * game itself only needs Java 8.
+ *
+ * A begin method returns the event to hand to the matching commit method, or
+ * null when the event is not recorded: then nothing is created and there is
+ * nothing to commit. The commit methods end the event and record it if the
+ * recording keeps it.
+ *
+ * Record with -XX:StartFlightRecording=filename=game.jfr and read the
+ * recording with FlightAnalysis.
+ *
+ */
+class FlightRecorder {
+	static final FlightRecorder RECORDER = load();
+
+	/**
+	 * @return	the flight events if they can be loaded, a recorder that records
+	 * 			nothing otherwise
+	 */
+	private static FlightRecorder load() {
+		try {
+			return (FlightRecorder) Class.forName("blackjack.daniel.ibanez.FlightEvents")
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			return new FlightRecorder();
+		} catch (LinkageError e) {
+			return new FlightRecorder();	// no jdk.jfr or HotSpot thread bean in this JVM
+		}
+	}
+
+	/**
+	 * @return	bytes allocated by the calling thread since it started,
+	 * 			0 if the JVM does not measure it
+	 */
+	long allocatedBytes() {
+		return 0;
+	}
+
+	/**
+	 * @return	a hand begun on a table, null when hands are not recorded
+	 */
+	Object beginRound() {
+		return null;
+	}
+
+	/**
+	 * @param round			hand returned by beginRound
+	 * @param hand			number of the hand at its table
+	 * @param seats			seats at the table
+	 * @param dealerCards	cards in the dealer's hand
+	 * @param allocated		bytes allocated by the table's thread while playing the hand
+	 */
+	void commitRound(Object round, long hand, int seats, int dealerCards, long allocated) {
+	}
+
+	/**
+	 * @return	a decision begun by a computer player, null when decisions are
+	 * 			not recorded
+	 */
+	Object beginDecision() {
+		return null;
+	}
+
+	/**
+	 * @param decision		decision returned by beginDecision
+	 * @param seat			player index
+	 * @param strategy		strategy of the player
+	 * @param strat			decision taken
+	 * @param handSize		cards in the player's hand
+	 * @param handValue		value of the player's hand
+	 * @param dealer		value of the dealer's up card
+	 */
+	void commitDecision(Object decision, int seat, Strategy strategy, Strat strat, int handSize,
+			int handValue, int dealer) {
+	}
+
+	/**
+	 * @return	a shuffle begun on a table, null when shuffles are not recorded
+	 */
+	Object beginShuffle() {
+		return null;
+	}
+
+	/**
+	 * @param shuffle		shuffle returned by beginShuffle
+	 * @param hand			number of the hand dealt after the shuffle
+	 * @param decks			decks in the shoe
+	 * @param cardsLeft		cards left in the shoe before the shuffle
+	 */
+	void commitShuffle(Object shuffle, long hand, int decks, int cardsLeft) {
+	}
+
+	/**
+	 * @return	a flush begun by a hand history, null when flushes are not recorded
+	 */
+	Object beginFlush() {
+		return null;
+	}
+
+	/**
+	 * @param flush		flush returned by beginFlush
+	 * @param records	records written since the last flush
+	 * @param bytes		bytes written since the last flush
+	 */
+	void commitFlush(Object flush, int records, long bytes) {
+	}
+
+}
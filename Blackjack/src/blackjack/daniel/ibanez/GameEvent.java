@@ -0,0 +1,131 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Enumeration that represents the kind of a GameEvent.
+ *
+ */
+enum EventType {
+	HAND_START, SHUFFLE, CARD, HOLE_CARD, REVEAL, ACTION, STATUS, SETTLEMENT, HAND_END
+}
+
+/**
+ * Something that happened at a table during a hand. Events are slots of an
+ * EventRing that are filled again for every event, so they must not be kept
+ * after EventHandler.onEvent returns. Only the fields of the event type are set:
+ *
+ * <pre>
+ *   HAND_START, SHUFFLE, HAND_END	hand
+ *   CARD							hand, seat, card
+ *   HOLE_CARD, REVEAL				hand, seat (DEALER), card
+ *   ACTION							hand, seat, action
+ *   STATUS							hand, seat, status
+ *   SETTLEMENT						hand, seat, winner, bet, balance
+ * </pre>
+ *
+ * The dealer's hidden card is published as a HOLE_CARD when it is dealt and
+ * as a REVEAL when the dealer turns it over. A SHUFFLE in the middle of a hand,
+ * when the shoe has run out, is followed by the cards still on the table again.
+ *
+ * Events are published by headless Tables, see Table.setEvents. The Swing game
+ * publishes none and has no reader of a ring: GameLogic pauses between the
+ * cards of its animation and writes the Gui's TableModel and the hand history
+ * itself, in the format Replay compares its own history with.
+ *
+ */
+public class GameEvent {
+	public static final int DEALER = -1;	// seat of the dealer
+
+	EventType type;
+	long hand;
+	int seat;
+	int card;
+	Action action;
+	Status status;
+	Winner winner;
+	int bet;
+	int balance;
+
+	/**
+	 * @return	kind of event
+	 */
+	public EventType getType() {
+		return type;
+	}
+
+	/**
+	 * @return	number of the hand at its table
+	 */
+	public long getHand() {
+		return hand;
+	}
+
+	/**
+	 * @return	player index or DEALER
+	 */
+	public int getSeat() {
+		return seat;
+	}
+
+	/**
+	 * @return	id of the card dealt
+	 */
+	public int getCard() {
+		return card;
+	}
+
+	/**
+	 * @return	decision taken by the player
+	 */
+	public Action getAction() {
+		return action;
+	}
+
+	/**
+	 * @return	new status of the player or dealer
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return	winner of the hand for the seat
+	 */
+	public Winner getWinner() {
+		return winner;
+	}
+
+	/**
+	 * @return	money bet by the player, doubled bets included
+	 */
+	public int getBet() {
+		return bet;
+	}
+
+	/**
+	 * @return	balance of the player after the balance update
+	 */
+	public int getBalance() {
+		return balance;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder().append(type).append(" hand ").append(hand);
+		switch (type) {
+			case CARD:
+			case HOLE_CARD:
+			case REVEAL:
+				return sb.append(" seat ").append(seat).append(' ').append(Card.get(card)).toString();
+			case ACTION:
+				return sb.append(" seat ").append(seat).append(' ').append(action).toString();
+			case STATUS:
+				return sb.append(" seat ").append(seat).append(' ').append(status).toString();
+			case SETTLEMENT:
+				return sb.append(" seat ").append(seat).append(' ').append(winner)
+						.append(" bet ").append(bet).append(" balance ").append(balance).toString();
+			default:
+				return sb.toString();
+		}
+	}
+
+}
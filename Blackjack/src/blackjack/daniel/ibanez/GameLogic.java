@@ -1,9 +1,11 @@
 package blackjack.daniel.ibanez;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
 
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 
 /**
@@ -15,44 +17,64 @@ enum Winner {
 }
 
 /**
- *	The GameLogic class runs the logic of the blackjack game.
+ *	The GameLogic class runs the logic of the blackjack game. Every hand writes
+ *	the Gui and the hand history directly between the pauses of its animation;
+ *	it publishes no GameEvents, only headless Tables do. In TURBO a game without
+ *	human player is played on a headless Table on a thread of its own instead,
+ *	and the Gui only shows a hand now and then.
  */
 public class GameLogic {
 	private Gui gui;
-	private Deck deck;
+	private Shoe shoe;
+	private SplittableRandom seeds;
+	private HandHistory history;
+	private SessionLog log;
 	private Player[] players;
 	private Dealer dealer;
 	private boolean onlyAI;
+	private Pacer pacer;
+	private Table table;		// plays the hands of TURBO games without human player
 	private static final int SLEEP = 500;	// slow down animation (ms)
+	private static final int DEAL_PAUSE = 200;	// pause between cards dealt (ms)
+	private static final int DECKS = 6;		// decks in the shoe
+	private static final double PENETRATION = 0.75;	// part of the shoe dealt before shuffling
+	private static final String HISTORY_FILE = "Results.txt";
+	private static final int HISTORY_QUEUE = 1024;			// hands waiting to be written
+	private static final long HISTORY_FLUSH = 1000;			// ms between flushes
+	private static final long HISTORY_MAX_BYTES = 10 * 1024 * 1024;	// size of a history file
+	private static final long HISTORY_MAX_AGE = 60 * 60 * 1000;	// ms before starting a new file
+	private static final String SESSION_FILE = "Session.log";	// replayed with Replay
+	private static final long TURBO_SHOW = 100;		// ms between hands shown in TURBO
 	
 	/**
 	 * Initializes dealer and players, and waits for the player to click the DEAL/STAND/BET buttons OR
 	 * calls 'newHand' method when no human is in the game (this happens when the user enters 'ai' as 
 	 * name in the input dialog).
+	 * @param speed		speed the game starts at
 	 */
-	public GameLogic() {
-		players = new Player[3];
+	public GameLogic(Speed speed) {
+		pacer = new Pacer(speed);
 		gui = new Gui("Blackjack", this);
+		gui.setSpeed(speed);
 		String playerName = gui.inputNameDialog();
-		if (playerName.trim().toLowerCase().equals("ai")) {
-			players[0] = new PlayerAI(playerName, 50, new BasicStrategy());
-			onlyAI = true;
-		}
-		else {
-			players[0] = new Player(playerName, 50);
-			players[0].setBet(10);	// minimum bet is 10
-			players[0].setBalance(players[0].getBalance() - 10);
-			onlyAI = false;
-		}
-			
-		players[1] = new PlayerAI("Hal", 50, new AdvancedStrategy());
-		players[2] = new PlayerAI("Bishop", 50, new AdvancedStrategy());
+		players = createPlayers(playerName);
+		onlyAI = players[0] instanceof PlayerAI;
 		dealer = new Dealer();
+		shoe = createShoe();
+		seeds = new SplittableRandom();
 		
 		// file that will contain every hand played
-		try (BufferedWriter bw = new BufferedWriter(new FileWriter("Results.txt"))) {
-			bw.write("-- New game: " + playerName);
-			bw.newLine();
+		try {
+			history = new HandHistory(new File(HISTORY_FILE), HISTORY_QUEUE, HISTORY_FLUSH,
+					HISTORY_MAX_BYTES, HISTORY_MAX_AGE);
+			history.tryAdd(HandHistory.newGameText(playerName));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		// seeds and buttons clicked, to replay the session
+		try {
+			log = new SessionLog(new File(SESSION_FILE), playerName);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -67,13 +89,53 @@ public class GameLogic {
 		
 		gui.updateDealerCount(0);
 		
-		if (onlyAI)
+		if (onlyAI && pacer.getSpeed() == Speed.TURBO)
+			playTurbo();
+		else if (onlyAI)
 			newHand();
 		else 
 			// enable DEAL and Bet buttons and waits for event
 			gui.buttonSwitcher(true, true, false, false, false);
 	}
 	
+	/**
+	 * Players of a game. The human player sits at seat 0 and starts with the
+	 * minimum bet already placed, unless the name is 'ai', then a computer player
+	 * takes the seat.
+	 * @param playerName	name entered by the user
+	 * @return				players, seat 0 first
+	 */
+	static Player[] createPlayers(String playerName) {
+		Player[] players = new Player[3];
+		if (playerName.trim().toLowerCase().equals("ai"))
+			players[0] = new PlayerAI(playerName, 50, new BasicStrategy());
+		else {
+			players[0] = new Player(playerName, 50);
+			players[0].setBet(Table.MIN_BET);	// minimum bet is 10
+			players[0].setBalance(players[0].getBalance() - Table.MIN_BET);
+		}
+			
+		players[1] = new PlayerAI("Hal", 50, new AdvancedStrategy());
+		players[2] = new PlayerAI("Bishop", 50, new AdvancedStrategy());
+		return players;
+	}
+	
+	/**
+	 * @return	shoe of a game, always shuffled with a seed before dealing
+	 */
+	static Shoe createShoe() {
+		return new Shoe(DECKS, PENETRATION, new SplittableRandom());
+	}
+	
+	/**
+	 * Adds an event to the session log.
+	 * @param event		event
+	 */
+	private void logEvent(String event) {
+		if (log != null)
+			log.add(event);
+	}
+	
 	/**
 	 * Resets GUI and hands for dealers and players. It calls 'placeBets' method when done.
 	 */
@@ -93,7 +155,7 @@ public class GameLogic {
 			if (players[i].getStatus() != Status.DEAD)
 				players[i].setStatus(Status.ALIVE);
 			else 
-				gui.addCardToPanel(i, "Empty"); // silhouette
+				gui.showEmptySeat(i); // silhouette
 		}
 		
 		dealer.clearHand();
@@ -121,13 +183,20 @@ public class GameLogic {
 	}
 	
 	/**
-	 * Shuffle deck and deals the first two cards to all players and dealer. If the human 
-	 * player is still in the game, enables the HIT, STAND and BET buttons. Otherwise 
-	 * it calls the 'aiPlayersTurn' method. 
+	 * Shuffles the shoe if the cut card has come out and deals the first two cards to all 
+	 * players and dealer. If the human player is still in the game, enables the HIT, STAND 
+	 * and BET buttons. Otherwise it calls the 'aiPlayersTurn' method. 
 	 */
 	private void dealCards() {
-		deck = new Deck();
-		deck.shuffle();	
+		if (shoe.needsShuffle()) {
+			// every shoe gets its own seed so the session can be replayed
+			long seed = seeds.nextLong();
+			shoe.shuffle(seed);
+			if (log != null)
+				log.shuffled(seed);
+		}
+		shoe.startHand();
+		logEvent(SessionLog.DEAL);
 		gui.setDealerHidesCard(true); // dealer hides his first card for now
 		
 		SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
@@ -137,28 +206,20 @@ public class GameLogic {
 					// players get card
 					for (int i = 0; i < players.length; ++i) {
 						if (players[i].getStatus() == Status.ALIVE) {
-							Card card = deck.getNextCard();
+							Card card = shoe.getNextCard();
 							players[i].addCard(card);
-							gui.addCardToPanel(i, card.toString()); // display card
+							gui.addCardToPanel(i, card.getId()); // display card
 							gui.updatePlayerCount(i, players[i].getHandValue());
-							try {
-								Thread.sleep(200);
-							} catch (InterruptedException e) {
-								e.printStackTrace();
-							}
+							pacer.pause(DEAL_PAUSE);
 						}
 					}
 					// dealer gets card
-					Card card = deck.getNextCard();
+					Card card = shoe.getNextCard();
 					dealer.addCard(card);
-					gui.addCardToDealer(card.toString()); // add card image to dealers panel
+					gui.addCardToDealer(card.getId()); // add card image to dealers panel
 				
 					if (ncard < 1)
-						try {
-							Thread.sleep(200);
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						}
+						pacer.pause(DEAL_PAUSE);
 				}
 				
 				// display players information 
@@ -221,11 +282,7 @@ public class GameLogic {
 										
 					while (players[i].getStatus() == Status.ALIVE) {	// money left?
 						// pause between cards
-						try {
-							Thread.sleep(SLEEP);
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						}
+						pacer.pause(SLEEP);
 						Strat strat = ((PlayerAI)players[i]).
 								getPlayingStrategy(dealer.getHandValue(false), players[i].getHand());
 						
@@ -255,11 +312,7 @@ public class GameLogic {
 						players[i].setDoubleAllowed(false); // double down not allowed in this round 
 					}
 					// pause between players
-					try {
-						Thread.sleep(SLEEP);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
+					pacer.pause(SLEEP);
 				}	
 		
 				return null;
@@ -279,9 +332,9 @@ public class GameLogic {
 	 * @param i		player index
 	 */
 	private void aiHits(int i) {
-		Card card = deck.getNextCard();
+		Card card = shoe.getNextCard();
 		players[i].addCard(card);
-		gui.addCardToPanel(i, card.toString());
+		gui.addCardToPanel(i, card.getId());
 		gui.updatePlayerCount(i, players[i].getHandValue());
 	
 		if (players[i].getHandValue() > 21) {
@@ -311,9 +364,9 @@ public class GameLogic {
 		players[i].setBet(players[i].getBet() * 2);
 		gui.updatePlayerBet(i, players[i].getBet());
 		// get one more card
-		Card card = deck.getNextCard();
+		Card card = shoe.getNextCard();
 		players[i].addCard(card);
-		gui.addCardToPanel(i, card.toString());
+		gui.addCardToPanel(i, card.getId());
 		gui.updatePlayerCount(i, players[i].getHandValue());
 	
 		if (players[i].getHandValue() > 21) {
@@ -343,11 +396,7 @@ public class GameLogic {
 			@Override
 			protected Void doInBackground() throws Exception {
 				// pause after showing hidden card
-				try {
-					Thread.sleep(SLEEP);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
+				pacer.pause(SLEEP);
 				// any player holding a valid hand? 
 				if (	players[0].getStatus() == Status.STAND ||
 						players[1].getStatus() == Status.STAND ||
@@ -366,9 +415,9 @@ public class GameLogic {
 						// draw more cards
 						while (dealer.getStatus() != Status.BUSTED && 
 								dealer.getStatus() != Status.STAND) {
-							Card card = deck.getNextCard();
+							Card card = shoe.getNextCard();
 							dealer.addCard(card);
-							gui.addCardToDealer(card.toString());
+							gui.addCardToDealer(card.getId());
 							gui.updateDealerCount(dealer.getHandValue(true));
 							if (dealer.getHandValue(true) > 21) {
 								dealer.setStatus(Status.BUSTED);
@@ -380,11 +429,7 @@ public class GameLogic {
 							}
 							else 
 								// pause before getting new card
-								try {
-									Thread.sleep(SLEEP);
-								} catch (InterruptedException e) {
-									e.printStackTrace();
-								}
+								pacer.pause(SLEEP);
 						}	
 					}
 				}
@@ -408,18 +453,8 @@ public class GameLogic {
 	 * case, enables the DEAL and BET buttons and waits for a button event.
 	 */
 	private void calculateBalanceForAllPlayers() {
-		// output hand results to file
-		try (BufferedWriter bw = new BufferedWriter(new FileWriter("Results.txt", true))) {
-			bw.write("-- NEW hand --------------------------------------------------");
-			bw.newLine();
-			for (int i = 0; i < players.length; ++i) {
-				bw.append(players[i].toString());
-				bw.newLine();
-			}
-			bw.write("Dealer: " + dealer.toString());
-		} catch (IOException ex) {
-			ex.printStackTrace();
-		}
+		// hand results to file
+		String handText = HandHistory.handText(players, dealer);
 		
 		// compare every player's hand with dealer's hand 
 		for (int i = 0; i < players.length; ++i) {
@@ -427,56 +462,27 @@ public class GameLogic {
 			if (players[i].getStatus() == Status.DEAD)
 				continue;
 			
-			Winner winner = Winner.PUSH;
-			if (players[i].getStatus() != Status.BUSTED) {
-				if (dealer.getStatus() == Status.BUSTED)
-					winner = Winner.PLAYER;
-				else {
-					if (players[i].getHandValue() > dealer.getHandValue(true))
-						winner = Winner.PLAYER;
-					
-					if (dealer.getHandValue(true) > players[i].getHandValue())
-						winner = Winner.DEALER;
-					
-					if (players[i].getStatus() == Status.BLACKJACK && 
-							dealer.getStatus() != Status.BLACKJACK)
-						winner = Winner.PLAYER;
-					
-					if (dealer.getStatus() == Status.BLACKJACK &&
-							players[i].getStatus() != Status.BLACKJACK)
-						winner = Winner.DEALER;
-				}
-			}
-			else 
-				winner = Winner.DEALER;
+			Winner winner = Table.findWinner(players[i], dealer);
 			
 			// balance and bet adjustments
 			if (winner == Winner.DEALER) {				
 				if (players[i].getBalance() == 0) {
 					players[i].setStatus(Status.DEAD);
-					gui.updatePlayerName(i, players[i].getName() + " OUT");
 					if (i == 0) 
 						onlyAI = true;
 				}
-				else {
-					gui.updatePlayerName(i, players[i].getName() + " LOSES (-$" + 
-						players[i].getBet() + ")");
-				}
 			}
-			else if (winner == Winner.PLAYER) {
+			else if (winner == Winner.PLAYER)
 				players[i].setBalance(players[i].getBalance() + (players[i].getBet() * 2));
-				gui.updatePlayerName(i, players[i].getName() + " WINS (+$" +
-						players[i].getBet() + ")");
-			}
-			else {
+			else
 				players[i].setBalance(players[i].getBalance() + players[i].getBet());
-				gui.updatePlayerName(i, players[i].getName() + " PUSH (+$0)");
-			}
+			gui.updatePlayerName(i, players[i].getName() + 
+					result(players[i].getStatus(), winner, players[i].getBet()));
 			
 			// forces human player to bet minimum $10  
 			if (i == 0 && !onlyAI) {
-				players[i].setBalance(players[i].getBalance() - 10);
-				players[i].setBet(10);
+				players[i].setBalance(players[i].getBalance() - Table.MIN_BET);
+				players[i].setBet(Table.MIN_BET);
 			}
 			else 
 				players[i].setBet(0);
@@ -488,33 +494,141 @@ public class GameLogic {
 			gui.updatePlayerBet(i, players[i].getBet());
 		}
 		
-		// output hand results to file
-		try (BufferedWriter bw = new BufferedWriter(new FileWriter("Results.txt", true))) {
-			bw.newLine();
-			bw.write("-- Update balance");
-			bw.newLine();
-			for (int i = 0; i < players.length; ++i) {
-				bw.append(players[i].toString());
-				bw.newLine();
-			}
-			bw.newLine();
-		} catch (IOException ex) {
-			ex.printStackTrace();
-		}
+		// output hand results to file, without waiting on the event thread
+		if (history != null)
+			history.tryAdd(handText + HandHistory.balanceText(players));
 			
-		if (onlyAI) {
-			try {
-				Thread.sleep(SLEEP);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-			playAnotherHand();
-		}
+		if (onlyAI && pacer.getSpeed() == Speed.TURBO)
+			playTurbo();
+		else if (onlyAI)
+			// pause with the results on screen, the event thread keeps drawing
+			pacer.later(SLEEP, new Runnable() {
+				@Override
+				public void run() {
+					playAnotherHand();
+				}
+			});
 		else 
 			// Enable bet and deal buttons
 			gui.buttonSwitcher(true, true, false, false, false);
 	}
 
+	/**
+	 * @param status	status of the player after the balance update
+	 * @param winner	winner of the hand for the player
+	 * @param bet		money bet by the player
+	 * @return			result shown after the player's name
+	 */
+	private static String result(Status status, Winner winner, int bet) {
+		if (status == Status.DEAD)
+			return " OUT";
+		if (winner == Winner.DEALER)
+			return " LOSES (-$" + bet + ")";
+		if (winner == Winner.PLAYER)
+			return " WINS (+$" + bet + ")";
+		return " PUSH (+$0)";
+	}
+	
+	/**
+	 * Plays the hands of a game without human player on a thread of their own
+	 * while the speed is TURBO. The hands are played on a headless Table that
+	 * shares the shoe, players, seeds and history of the game, without workers,
+	 * timers or pauses, and the last hand is shown at most every TURBO_SHOW ms.
+	 * When the speed changes or all players are dead, 'playAnotherHand' goes on
+	 * with the game on the event thread.
+	 */
+	private void playTurbo() {
+		gui.buttonSwitcher(false, false, false, false, false);
+		if (table == null) {
+			table = new Table(shoe, players);
+			table.setSeeds(new LongSupplier() {
+				@Override
+				public long getAsLong() {
+					long seed = seeds.nextLong();
+					if (log != null)
+						log.put(SessionLog.SHUFFLE + " " + seed);
+					return seed;
+				}
+			});
+			table.setHistory(history);
+		}
+		
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				boolean played = false;
+				long shown = System.nanoTime();
+				while (pacer.getSpeed() == Speed.TURBO && !table.allAreDead()) {
+					if (log != null)
+						log.put(SessionLog.DEAL);
+					table.playHand();
+					played = true;
+					if (System.nanoTime() - shown >= TURBO_SHOW * 1000000) {
+						showHand();
+						shown = System.nanoTime();
+					}
+				}
+				
+				if (played)
+					showHand();
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						playAnotherHand();
+					}
+				});
+			}
+		}, "turbo");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Shows the last hand played on the table as the animation leaves it, with
+	 * the results of the players, in one frame.
+	 */
+	private void showHand() {
+		gui.changeAtOnce(new Runnable() {
+			@Override
+			public void run() {
+				gui.clearAllHands();
+				for (int i = 0; i < players.length; ++i) {
+					Winner winner = table.getWinner(i);
+					if (winner != null)
+						gui.updatePlayerName(i, players[i].getName() +
+								result(players[i].getStatus(), winner, table.getLastBet(i)));
+					else {
+						// out before the hand
+						gui.updatePlayerName(i, players[i].getName());
+						gui.showEmptySeat(i);
+					}
+					Hand hand = players[i].getHand();
+					for (int c = 0; c < hand.getSize(); ++c)
+						gui.addCardToPanel(i, hand.getCardAt(c).getId());
+					gui.updatePlayerCount(i, players[i].getHandValue());
+					gui.updatePlayerBet(i, players[i].getBet());
+					gui.updatePlayerBalance(i, players[i].getBalance());
+				}
+				
+				Dealer dealer = table.getDealer();
+				Hand hand = dealer.getHand();
+				for (int c = 0; c < hand.getSize(); ++c)
+					gui.addCardToDealer(hand.getCardAt(c).getId());
+				gui.setDealerHidesCard(false);
+				gui.updateDealerCount(dealer.getHandValue(true));
+				if (dealer.getStatus() == Status.BLACKJACK)
+					gui.updateDealerName("Dealer Blackjack!");
+				else if (dealer.getStatus() == Status.BUSTED)
+					gui.updateDealerName("Dealer BUSTED!");
+				else if (dealer.getStatus() == Status.STAND)
+					gui.updateDealerName("Dealer STAND");
+				else
+					gui.updateDealerName("Dealer");
+				gui.activateDealer();
+			}
+		});
+	}
+	
 	/**
 	 * Checks if any player has money left before playing another hand.
 	 * In that case, it calls the 'newHand' method.
@@ -545,6 +659,7 @@ public class GameLogic {
 	 * Button handler for Bet+ 
 	 */
 	public void betUpButtonClicked() {
+		logEvent(SessionLog.BET_UP);
 		if (players[0].getBalance() > 0) {
 			players[0].setBet(players[0].getBet() + 10);
 			gui.updatePlayerBet(0, players[0].getBet());
@@ -557,6 +672,7 @@ public class GameLogic {
 	 * Button handler for Bet-
 	 */
 	public void betDownButtonClicked() {
+		logEvent(SessionLog.BET_DOWN);
 		if (players[0].getBet() > 10) {
 			players[0].setBet(players[0].getBet() - 10);
 			gui.updatePlayerBet(0, players[0].getBet());
@@ -569,10 +685,11 @@ public class GameLogic {
 	 * Button handler for HIT button
 	 */
 	public void hitButtonClicked() {	
+		logEvent(SessionLog.HIT);
 		gui.buttonSwitcher(false, false, true, true, false); // bet, deal, hit, stand, double
-		Card card = deck.getNextCard();
+		Card card = shoe.getNextCard();
 		players[0].addCard(card);
-		gui.addCardToPanel(0, card.toString());
+		gui.addCardToPanel(0, card.getId());
 		gui.updatePlayerCount(0, players[0].getHandValue());
 	
 		if (players[0].getHandValue() > 21) {
@@ -592,6 +709,7 @@ public class GameLogic {
 	 * Button handler for DOUBLE button
 	 */
 	public void doubleButtonClicked() {
+		logEvent(SessionLog.DOUBLE);
 		// double bet
 		if (players[0].getBalance() >= players[0].getBet()) {
 			gui.buttonSwitcher(false, false, false, false, false);	// disable all buttons
@@ -600,9 +718,9 @@ public class GameLogic {
 			players[0].setBet(players[0].getBet() * 2);
 			gui.updatePlayerBet(0, players[0].getBet());
 			// get one more card
-			Card card = deck.getNextCard();
+			Card card = shoe.getNextCard();
 			players[0].addCard(card);
-			gui.addCardToPanel(0, card.toString());
+			gui.addCardToPanel(0, card.getId());
 			gui.updatePlayerCount(0, players[0].getHandValue());
 		
 			if (players[0].getHandValue() > 21) {
@@ -623,11 +741,20 @@ public class GameLogic {
 	 * Button handler for STAND button. It calls the 'aiPlayersTurn' method.
 	 */
 	public void standButtonClicked() {
+		logEvent(SessionLog.STAND);
 		players[0].setStatus(Status.STAND);
 		gui.updatePlayerName(0, players[0].getName() + " STAND");
 		aiPlayersTurn();
 	}
 	
+	/**
+	 * Handler for the speed selector.
+	 * @param speed		speed selected
+	 */
+	public void speedChanged(Speed speed) {
+		pacer.setSpeed(speed);
+	}
+	
 	/**
 	 * Button handler for EXIT button
 	 */
@@ -637,9 +764,10 @@ public class GameLogic {
 
 	/**
 	 * Main method
+	 * @param args	speed the game starts at: realtime (default), accelerated or turbo
 	 */
 	public static void main(String[] args) {
-		new GameLogic();
+		new GameLogic(args.length > 0 ? Speed.valueOf(args[0].toUpperCase()) : Speed.REALTIME);
 	}
 
 }
@@ -0,0 +1,399 @@
+package blackjack.daniel.ibanez;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+
+/**
+ * Server hosting one table per connection. Every client is the human player of
+ * its own table, at seat 0 next to Hal and Bishop like in the GUI game, and
+ * plays it with one byte commands:
+ *
+ * <pre>
+ *   DEAL    'D'  starts a hand
+ *   HIT     'H'
+ *   STAND   'S'
+ *   DOUBLE  '2'
+ * </pre>
+ *
+ * Every command is answered with one frame of FRAME bytes:
+ *
+ * <pre>
+ *   0     TURN (the player decides next), RESULT (the hand is over) or ERROR
+ *   1     status of the player (Status ordinal)
+ *   2     winner of the hand (Winner ordinal), -1 unless RESULT
+ *   3     TURN: id of the dealer's up card, RESULT: dealer's hand value
+ *   4     number of cards dealt to the player since the last frame (0-2)
+ *   5-6   ids of those cards
+ *   7     value of the player's hand
+ *   8-11  balance of the player (int)
+ * </pre>
+ *
+ * Connections are accepted on one thread and shared among reactors, threads
+ * that each run a selector over their connections and play their tables. A
+ * player that runs out of money buys in again, and the RESULT frame that put
+ * him out says DEAD.
+ *
+ * All tables share one TableMetrics, registered as an MXBean named after the
+ * port.
+ *
+ * Usage: java blackjack.daniel.ibanez.GameServer [port] [reactors]
+ *
+ */
+public class GameServer {
+	static final int PORT = 7777;
+	static final int FRAME = 12;
+	static final byte DEAL = 'D', HIT = 'H', STAND = 'S', DOUBLE = '2';
+	static final byte TURN = 1, RESULT = 2, ERROR = 3;
+	private static final int DECKS = 6;					// same shoe as GameLogic
+	private static final double PENETRATION = 0.75;
+	private static final int COMMANDS = 64;				// commands read at once per connection
+	private static final long STATS = 5000;				// ms between stats lines
+
+	private ServerSocketChannel server;
+	private Reactor[] reactors;
+	private final AtomicInteger tables = new AtomicInteger();
+	private final LongAdder hands = new LongAdder();
+	private final LongAdder decisions = new LongAdder();
+	private final TableMetrics metrics = new TableMetrics();
+
+	/**
+	 * Opens the port and starts the reactors.
+	 * @param port		local port
+	 * @param threads	number of reactors
+	 * @throws IOException when the port cannot be opened
+	 */
+	public GameServer(int port, int threads) throws IOException {
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(port), 1024);
+		reactors = new Reactor[threads];
+		for (int i = 0; i < threads; ++i) {
+			reactors[i] = new Reactor(new SplittableRandom());
+			Thread thread = new Thread(reactors[i], "reactor-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Accepts connections until the server is closed, handing them to the
+	 * reactors in turn.
+	 */
+	public void accept() {
+		int next = 0;
+		while (server.isOpen()) {
+			try {
+				SocketChannel channel = server.accept();
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				reactors[next++ % reactors.length].add(channel);
+			} catch (IOException e) {
+				if (server.isOpen())
+					e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting connections.
+	 * @throws IOException when the port cannot be closed
+	 */
+	public void close() throws IOException {
+		server.close();
+	}
+
+	/**
+	 * @return	number of tables with a client connected
+	 */
+	public int getTables() {
+		return tables.get();
+	}
+
+	/**
+	 * @return	number of hands started since the server was started
+	 */
+	public long getHands() {
+		return hands.sum();
+	}
+
+	/**
+	 * @return	number of hits, stands and doubles since the server was started
+	 */
+	public long getDecisions() {
+		return decisions.sum();
+	}
+
+	/**
+	 * @return	hands, decisions of all seats and phase latencies of all tables
+	 */
+	public TableMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Thread with a selector over its connections. All tables of a reactor
+	 * are played on its thread.
+	 */
+	private class Reactor implements Runnable {
+		private final Selector selector;
+		private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<SocketChannel>();
+		private final SplittableRandom random;		// seeds the shoes of new tables
+
+		Reactor(SplittableRandom random) throws IOException {
+			selector = Selector.open();
+			this.random = random;
+		}
+
+		/**
+		 * Hands a new connection to the reactor.
+		 * @param channel	non-blocking connection
+		 */
+		void add(SocketChannel channel) {
+			accepted.add(channel);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			while (selector.isOpen()) {
+				try {
+					selector.select();
+					SocketChannel channel;
+					while ((channel = accepted.poll()) != null) {
+						channel.register(selector, SelectionKey.OP_READ, new Connection(random.split()));
+						tables.incrementAndGet();
+					}
+
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						try {
+							if (key.isReadable())
+								read(key);
+							if (key.isValid() && key.isWritable() && flush(key) &&
+									((Connection) key.attachment()).in.position() > 0)
+								serve(key);		// commands left unanswered while the frames waited
+						} catch (IOException e) {
+							close(key);		// client gone
+						}
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		/**
+		 * Reads the commands sent on a connection and answers them.
+		 */
+		private void read(SelectionKey key) throws IOException {
+			Connection connection = (Connection) key.attachment();
+			if (((SocketChannel) key.channel()).read(connection.in) < 0)
+				close(key);
+			else
+				serve(key);
+		}
+
+		/**
+		 * Answers the commands received as long as there is room for the frames.
+		 */
+		private void serve(SelectionKey key) throws IOException {
+			Connection connection = (Connection) key.attachment();
+			connection.in.flip();
+			while (connection.in.hasRemaining() && connection.out.remaining() >= FRAME)
+				connection.command(connection.in.get());
+			connection.in.compact();
+			flush(key);
+		}
+
+		/**
+		 * Sends the frames waiting on a connection. While frames are left, the
+		 * connection is watched for writing and no more commands are read.
+		 * @return	true if all frames were sent
+		 */
+		private boolean flush(SelectionKey key) throws IOException {
+			Connection connection = (Connection) key.attachment();
+			connection.out.flip();
+			((SocketChannel) key.channel()).write(connection.out);
+			connection.out.compact();
+			boolean sent = connection.out.position() == 0;
+			key.interestOps(sent ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+			return sent;
+		}
+
+		private void close(SelectionKey key) {
+			key.cancel();
+			try {
+				key.channel().close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			tables.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Table of a client and the buffers of its connection.
+	 */
+	private class Connection {
+		final ByteBuffer in = ByteBuffer.allocate(COMMANDS);
+		final ByteBuffer out = ByteBuffer.allocate(COMMANDS * FRAME);
+		private final Table table;
+		private final Player player;
+		private boolean playing;		// hand started and not finished
+
+		Connection(SplittableRandom random) {
+			player = new Player("Client", Simulator.BALANCE);
+			buyIn(player);
+			PlayerAI[] ai = Simulator.aiSeats();
+			table = new Table(new Shoe(DECKS, PENETRATION, random), player, ai[1], ai[2]);
+			table.setMetrics(metrics);
+		}
+
+		/**
+		 * Plays a command and puts the answer into the output buffer.
+		 * @param command	command received from the client
+		 */
+		void command(byte command) {
+			if (command == DEAL && !playing) {
+				table.startHand();
+				playing = true;
+				hands.increment();
+				if (player.getStatus() == Status.ALIVE)
+					frame(TURN, 2);
+				else
+					finish(2);
+				return;
+			}
+			if ( !playing || player.getStatus() != Status.ALIVE) {
+				frame(ERROR, 0);
+				return;
+			}
+
+			switch (command) {
+				case HIT:
+					decisions.increment();
+					table.hit(0);
+					if (player.getStatus() == Status.ALIVE)
+						frame(TURN, 1);
+					else
+						finish(1);
+					break;
+				case STAND:
+					decisions.increment();
+					table.stand(0);
+					finish(0);
+					break;
+				case DOUBLE:
+					if ( !table.doubleDown(0)) {
+						frame(ERROR, 0);
+						break;
+					}
+					decisions.increment();
+					finish(1);
+					break;
+				default:
+					frame(ERROR, 0);
+			}
+		}
+
+		/**
+		 * Lets the computer players and the dealer play, and answers with the
+		 * result. Players out of money buy in again afterwards.
+		 * @param cards		number of cards dealt to the client since the last frame
+		 */
+		private void finish(int cards) {
+			table.finishHand();
+			playing = false;
+			frame(RESULT, cards);
+			for (int i = 0; i < table.getSeats(); ++i)
+				if (table.getPlayer(i).getStatus() == Status.DEAD) {
+					if (i == 0)
+						buyIn(player);
+					else
+						table.getPlayer(i).setBalance(Simulator.BALANCE);
+					table.getPlayer(i).setStatus(Status.ALIVE);
+				}
+		}
+
+		/**
+		 * @param type		TURN, RESULT or ERROR
+		 * @param cards		number of cards dealt to the client since the last frame
+		 */
+		private void frame(byte type, int cards) {
+			Hand hand = player.getHand();
+			Winner winner = type == RESULT ? table.getWinner(0) : null;
+			out.put(type);
+			out.put((byte) player.getStatus().ordinal());
+			out.put((byte) (winner != null ? winner.ordinal() : -1));
+			if (type == RESULT)
+				out.put((byte) table.getDealer().getHandValue(true));
+			else
+				out.put((byte) (playing ? table.getDealer().getHand().getCardId(1) : -1));
+			out.put((byte) cards);
+			for (int i = 0; i < 2; ++i)
+				out.put((byte) (i < cards ? hand.getCardId(hand.getSize() - cards + i) : -1));
+			out.put((byte) player.getHandValue());
+			out.putInt(player.getBalance());
+		}
+	}
+
+	/**
+	 * Human player with a new starting balance and the minimum bet placed.
+	 */
+	private static void buyIn(Player player) {
+		player.setBalance(Simulator.BALANCE - Table.MIN_BET);
+		player.setBet(Table.MIN_BET);
+	}
+
+	/**
+	 * Main method. Prints the number of tables, hands/s and decisions/s every
+	 * few seconds.
+	 * @param args	port (default 7777), number of reactors (default number of cores)
+	 * @throws IOException when the port cannot be opened
+	 * @throws InterruptedException when interrupted between stats lines
+	 * @throws JMException when the metrics cannot be registered
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, JMException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : PORT;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) :
+				Runtime.getRuntime().availableProcessors();
+
+		final GameServer server = new GameServer(port, threads);
+		server.getMetrics().register("server-" + port);
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				server.accept();
+			}
+		}, "acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		System.out.println(String.format("Listening on port %d with %d reactors", port, threads));
+
+		long hands = 0, decisions = 0;
+		while (acceptor.isAlive()) {
+			Thread.sleep(STATS);
+			long nowHands = server.getHands(), nowDecisions = server.getDecisions();
+			System.out.println(String.format("Tables: %-7d Hands/s: %-10.0f Decisions/s: %.0f",
+					server.getTables(), (nowHands - hands) * 1000.0 / STATS,
+					(nowDecisions - decisions) * 1000.0 / STATS));
+			hands = nowHands;
+			decisions = nowDecisions;
+		}
+	}
+
+}
@@ -12,16 +12,22 @@ import javax.imageio.ImageIO;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.Timer;
 import javax.swing.WindowConstants;
 
 /**
  *	Graphical user interface representing a game of blackjack.  
  *
+ *	The update methods can be called from any thread. They change a TableModel,
+ *	and a timer on the event thread shows the latest state of the model at most
+ *	once per frame. In TURBO speed the model is only shown a few times per second.
+ *
  */
 public class Gui extends JFrame {
 	private static final long serialVersionUID = 1L;
@@ -31,6 +37,12 @@ public class Gui extends JFrame {
 	private JButton hitButton, standButton, dealButton, exitButton, doubleButton;
 	private JButton betDownButton, betUpButton;
 	private JTextField betText, balanceAmount;
+	private JComboBox<Speed> speedBox;
+	private Timer frames;
+	private TableModel model;
+	private long shownVersion = -1;		// version of the model on screen
+	private static final int FRAME = 16;	// ms between screen updates (60 fps)
+	private static final int TURBO_FRAME = 250;	// ms between screen updates in TURBO
 	
 	/**
 	 * Draws all the components in the screen.
@@ -40,6 +52,9 @@ public class Gui extends JFrame {
 	public Gui(String title, GameLogic game) {
 		super(title);
 		this.game = game; 
+		CardImages.preload(); // decoded while the frame is built
+		model = new TableModel(3);
+		model.setName(model.getDealer(), "Dealer");
 		try {
 			setIconImage(ImageIO.read(getClass().getResource("/Icon.png")));
 		} catch (IOException e) {
@@ -92,8 +107,13 @@ public class Gui extends JFrame {
 		// ==================== Bottom panel
 		JPanel bottomPanel = new JPanel();
 		bottomPanel.setBackground(new Color(150, 180, 190)); // blue
+		// speed selector
+		speedBox = new JComboBox<Speed>(Speed.values());
+		speedBox.setFont(new Font("Arial", Font.PLAIN, 20));
+		speedBox.setFocusable(false);
+		bottomPanel.add(speedBox);
 		// empty space 
-		bottomPanel.add(Box.createRigidArea(new Dimension(500, 0)));
+		bottomPanel.add(Box.createRigidArea(new Dimension(340, 0)));
 		// double button
 		doubleButton = new JButton("Double");
 		doubleButton.setFont(new Font("Arial", Font.PLAIN, 30));
@@ -146,10 +166,67 @@ public class Gui extends JFrame {
 		// enable/disable buttons 
 		buttonSwitcher(true, false, true, true, true); // bet, deal, hit, stand, double
 		setVisible(true);
+		
+		// shows the changes of the model
+		frames = new Timer(FRAME, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				showModel();
+			}
+		});
+		frames.start();
+	}
+	
+	/**
+	 * Shows the model on screen if it has changed since the last frame. Runs on
+	 * the event thread.
+	 */
+	private void showModel() {
+		TableModel.Snapshot snapshot = model.snapshot(shownVersion);
+		if (snapshot == null)
+			return;
+		shownVersion = snapshot.version;
+		
+		for (int i = 0; i < playerPanels.length; ++i) {
+			TableModel.Seat seat = snapshot.seats[i];
+			playerPanels[i].setPlayerName(seat.name);
+			playerPanels[i].setCount(seat.count);
+			playerPanels[i].setBet(seat.bet);
+			playerPanels[i].setBalance(seat.balance);
+			playerPanels[i].setCards(seat.cards);
+			if (seat.active)
+				playerPanels[i].activate();
+			else
+				playerPanels[i].inactivate();
+		}
+		
+		// player score board
+		setText(betText, snapshot.seats[0].bet + "");
+		setText(balanceAmount, snapshot.seats[0].balance + "");
+		
+		TableModel.Seat dealer = snapshot.seats[model.getDealer()];
+		dealerPanel.setCardHidden(snapshot.dealerHidesCard);
+		dealerPanel.setDealerName(dealer.name);
+		dealerPanel.setCount(dealer.count);
+		dealerPanel.setCards(dealer.cards);
+		if (dealer.active)
+			dealerPanel.activate();
+		else
+			dealerPanel.inactivate();
 	}
 	
 	/**
-	 * Listeners for all buttons (HIT, STAND, DEAL, DOUBLE, EXIT, BETup and BETdown).
+	 * Changes the text of a field only if it is different, so the field is not
+	 * repainted for nothing.
+	 */
+	private static void setText(JTextField field, String text) {
+		if (!text.equals(field.getText()))
+			field.setText(text);
+	}
+	
+	/**
+	 * Listeners for all buttons (HIT, STAND, DEAL, DOUBLE, EXIT, BETup and BETdown)
+	 * and the speed selector.
 	 */
 	private void setupButtonListeners() {
 		hitButton.addActionListener(new ActionListener() {
@@ -200,6 +277,15 @@ public class Gui extends JFrame {
 				game.doubleButtonClicked();
 			}		
 		});
+		
+		speedBox.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				Speed speed = (Speed) speedBox.getSelectedItem();
+				frames.setDelay(speed == Speed.TURBO ? TURBO_FRAME : FRAME);
+				game.speedChanged(speed);
+			}
+		});
 	}
 	
 	/**
@@ -233,7 +319,7 @@ public class Gui extends JFrame {
 	 * @param name		string 
 	 */
 	public void updatePlayerName(int nplayer, String name) {
-		playerPanels[nplayer].setPlayerName(name);
+		model.setName(nplayer, name);
 	}
 	
 	/**
@@ -242,31 +328,27 @@ public class Gui extends JFrame {
 	 * @param count		value of cards in player's hand
 	 */
 	public void updatePlayerCount(int nplayer, int count) {
-		playerPanels[nplayer].setCount(count);
+		model.setCount(nplayer, count);
 	}
 	
 	/**
-	 * Updates player's bet label for a given player.
+	 * Updates player's bet label for a given player, and the score board
+	 * for the human player.
 	 * @param nplayer	player index
 	 * @param bet		amount of money to bet
 	 */
 	public void updatePlayerBet(int nplayer, int bet) {
-		playerPanels[nplayer].setBet(bet);
-		// updates player score board
-		if (nplayer == 0)
-			betText.setText(bet + "");
+		model.setBet(nplayer, bet);
 	}
 	
 	/**
-	 * Updates player's balance label for a given player. 
+	 * Updates player's balance label for a given player, and the score board
+	 * for the human player.
 	 * @param nplayer	player index
 	 * @param balance	amount of money left
 	 */
 	public void updatePlayerBalance(int nplayer, int balance) {
-		playerPanels[nplayer].setBalance(balance);
-		// updates player score board
-		if (nplayer == 0)
-			balanceAmount.setText(balance + "");
+		model.setBalance(nplayer, balance);
 	}
 	
 	/**
@@ -274,7 +356,7 @@ public class Gui extends JFrame {
 	 * @param count		dealer's hand value
 	 */
 	public void updateDealerCount(int count) {
-		dealerPanel.setCount(count);
+		model.setCount(model.getDealer(), count);
 	}
 	
 	/**
@@ -282,7 +364,7 @@ public class Gui extends JFrame {
 	 * @param name		string representing dealer's name
 	 */
 	public void updateDealerName(String name) {
-		dealerPanel.setDealerName(name);
+		model.setName(model.getDealer(), name);
 	}
 
 	/**
@@ -292,9 +374,7 @@ public class Gui extends JFrame {
 	 * 					false - hidden card is not hidden any longer
 	 */					
 	public void setDealerHidesCard(boolean hide) {
-		dealerPanel.setCardHidden(hide);
-		revalidate();
-		repaint();
+		model.setDealerHidesCard(hide);
 	}
 	
 	/**
@@ -302,44 +382,40 @@ public class Gui extends JFrame {
 	 * @param nplayer	player index
 	 */	
 	public void activatePlayer(int nplayer) {
-		playerPanels[0].inactivate();
-		playerPanels[1].inactivate();
-		playerPanels[2].inactivate();
-		playerPanels[nplayer].activate();
-		dealerPanel.inactivate();
+		model.setActive(nplayer);
 	}
 	
 	/**
 	 * Activates (changes color) dealer's label when it is his turn to play.
 	 */
 	public void activateDealer() {
-		playerPanels[0].inactivate();
-		playerPanels[1].inactivate();
-		playerPanels[2].inactivate();
-		dealerPanel.activate();
+		model.setActive(model.getDealer());
 	}
 		
 	/**
 	 * Adds an image to the panel representing the cards.
 	 * @param panelNum		human (0), AI players (1-2) 
-	 * @param cardName		name of the file containing the graphical 
-	 * 						representation of the card
+	 * @param cardId		id of the card to be displayed
 	 */
-	public void addCardToPanel(int panelNum, String cardName) {
-		playerPanels[panelNum].addCard(cardName);
-		revalidate();
-		repaint();
+	public void addCardToPanel(int panelNum, int cardId) {
+		model.addCard(panelNum, cardId);
+	}
+	
+	/**
+	 * Adds the placeholder image (empty silhouette) to the panel of a player
+	 * that is out of the game.
+	 * @param panelNum		human (0), AI players (1-2) 
+	 */
+	public void showEmptySeat(int panelNum) {
+		model.addCard(panelNum, CardImages.EMPTY);
 	}
 	
 	/**
 	 * Adds an image to the panel representing the cards.
-	 * @param cardName		name of the file containing the graphical 
-	 * 						representation of the card
+	 * @param cardId		id of the card to be displayed
 	 */
-	public void addCardToDealer(String cardName) {
-		dealerPanel.addCard(cardName);
-		revalidate();
-		repaint();
+	public void addCardToDealer(int cardId) {
+		model.addCard(model.getDealer(), cardId);
 	}
 	
 	/**
@@ -347,12 +423,8 @@ public class Gui extends JFrame {
 	 * in players hands and dealer.
 	 */
 	public void clearAllHands() {
-		for (PlayerPanel ppanel : playerPanels) 
-			ppanel.removeCards();
-	
-		dealerPanel.removeCards();
-		revalidate();
-		repaint();
+		for (int i = 0; i <= model.getDealer(); ++i)
+			model.clearCards(i);
 	}
 
 	/**
@@ -360,12 +432,28 @@ public class Gui extends JFrame {
 	 * represent the placeholder for the cards (empty silhouette).
 	 */
 	public void showEmptyTable() {
-		for (PlayerPanel ppanel : playerPanels) 
-			ppanel.addCard("Empty");
-		
-		dealerPanel.addCard("Empty");		
+		for (int i = 0; i <= model.getDealer(); ++i)
+			model.addCard(i, CardImages.EMPTY);
 	}
 
+	/**
+	 * Makes several changes at once, so no frame shows only part of them.
+	 * @param changes	calls of the update methods
+	 */
+	public void changeAtOnce(Runnable changes) {
+		synchronized (model) {
+			changes.run();
+		}
+	}
+
+	/**
+	 * Selects a speed in the speed selector, as if the user had chosen it.
+	 * @param speed		speed of the game
+	 */
+	public void setSpeed(Speed speed) {
+		speedBox.setSelectedItem(speed);
+	}
+	
 	/**
 	 * Enables and disables the buttons in the screen.
 	 * @param bet		bet buttons (up and down)
@@ -1,91 +1,173 @@
 package blackjack.daniel.ibanez;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
- *	Represents the cards that dealer and players are holding. 
+ *	Represents the cards that dealer and players are holding.
+ *	The hand keeps the ids of its cards together with its hard total (every
+ *	Ace counted as 1) and number of Aces, both updated when a card is added,
+ *	so value and softness are known without going through the cards.
  *
  */
 public class Hand {
-	private ArrayList<Card> cardList;
-	
+	/**
+	 * Number of different hand keys, see getKey.
+	 */
+	public static final int KEYS = 128;
+
+	private byte[] cards;
+	private int size;
+	private int hardTotal;
+	private int nAces;
+
 	public Hand() {
-		cardList = new ArrayList<Card>();
+		cards = new byte[12];
 	}
-	
+
 	/**
 	 * Adds a card to the hand.
-	 * @param card	Card object to be added to the hand. 
+	 * @param card	Card object to be added to the hand.
 	 */
 	public void addCard(Card card) {
-		cardList.add(card);
+		addCard(card.getId());
 	}
-	
+
+	/**
+	 * Adds a card to the hand.
+	 * @param id	id of the card to be added to the hand
+	 */
+	public void addCard(int id) {
+		if (size == cards.length)
+			cards = Arrays.copyOf(cards, size * 2);
+		cards[size++] = (byte) id;
+
+		int value = Card.get(id).getBlackjackValue();
+		if (value == 11) {
+			nAces++;
+			value = 1;
+		}
+		hardTotal += value;
+	}
+
 	/**
 	 * Returns a card from the given position on the list.
 	 * @param index		position
 	 * @return			Card object at given position or null if index bigger than list
-	 * 				 
+	 *
 	 */
 	public Card getCardAt(int index) {
-		if (index < cardList.size())
-			return cardList.get(index);
+		if (index < size)
+			return Card.get(cards[index]);
 		else
 			return null;
 	}
-	
+
+	/**
+	 * Returns the id of the card at the given position, without looking up the Card.
+	 * @param index		position, smaller than getSize
+	 * @return			id of the card
+	 */
+	public int getCardId(int index) {
+		return cards[index];
+	}
+
 	/**
 	 * Calculates the sum of values of all cards in the hand. The values follow
-	 * the standard blackjack rules. 
+	 * the standard blackjack rules.
 	 * @return		sum of values of all cards in the hand
 	 */
 	public int getValue() {
-		// calculate sum and count aces
-		int sum = 0;
-		int nAces = 0;
-		for (Card card : cardList) {
-			sum += card.getBlackjackValue();
-			if (card.getValue() == 1)
-				nAces++;
-		}
-		// count each ace as 1, while total is bigger than 21
-		while (nAces > 0 && sum > 21) {
-			nAces--;
-			sum = sum - 10; 
-		}
-		return sum;
+		// one ace counts as 11 as long as total is not bigger than 21
+		if (nAces > 0 && hardTotal < 12)
+			return hardTotal + 10;
+		return hardTotal;
 	}
-	
+
 	/**
 	 * Number of cards in the hand.
 	 * @return		number of cards
 	 */
 	public int getSize() {
-		return cardList.size();
+		return size;
 	}
 
 	/**
 	 * Empties hand.
 	 */
 	public void clear() {
-		cardList.clear();
+		size = 0;
+		hardTotal = 0;
+		nAces = 0;
 	}
-	
+
 	/**
 	 * Check whether there is an Ace among the cards in the hand.
 	 * @return 	true if hand contains an Ace,
 	 * 			false otherwise
 	 */
 	public boolean isSoft() {
-		for (Card card : cardList)
-			if (card.getValue() == 1)
-				return true;
-		return false;
+		return nAces > 0;
+	}
+
+	/**
+	 * Check whether one Ace in the hand is counted as 11.
+	 * @return	true if the value of the hand counts an Ace as 11,
+	 * 			false otherwise
+	 */
+	public boolean isSoftTotal() {
+		return nAces > 0 && hardTotal < 12;
+	}
+
+	/**
+	 * Returns a number between 0 and KEYS - 1 that identifies the value of the hand
+	 * and whether it contains an Ace counted as 1 or as 11. Hands with the same key
+	 * have the same value, isSoft and isSoftTotal, so the key can be used as index
+	 * in strategy tables.
+	 * @return	(value << 2) | (isSoft ? 2 : 0) | (isSoftTotal ? 1 : 0)
+	 */
+	public int getKey() {
+		int key = getValue() << 2;
+		if (nAces > 0)
+			key |= hardTotal < 12 ? 3 : 2;
+		return key;
+	}
+
+	/**
+	 * Returns the value of a hand key.
+	 * @param key	key returned by getKey
+	 * @return		value of the hand
+	 */
+	public static int keyValue(int key) {
+		return key >> 2;
+	}
+
+	/**
+	 * Tells whether a hand key belongs to a hand containing an Ace.
+	 * @param key	key returned by getKey
+	 * @return		isSoft of the hand
+	 */
+	public static boolean keyIsSoft(int key) {
+		return (key & 2) != 0;
+	}
+
+	/**
+	 * Tells whether a hand key belongs to a hand with an Ace counted as 11.
+	 * @param key	key returned by getKey
+	 * @return		isSoftTotal of the hand
+	 */
+	public static boolean keyIsSoftTotal(int key) {
+		return (key & 1) != 0;
 	}
 
 	@Override
 	public String toString() {
-		return "Hand [cardList=" + cardList + "]";
+		StringBuilder sb = new StringBuilder("Hand [cardList=[");
+		for (int i = 0; i < size; ++i) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append(Card.get(cards[i]));
+		}
+		return sb.append("]]").toString();
 	}
-	
+
 }
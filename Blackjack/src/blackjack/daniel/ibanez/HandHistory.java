@@ -0,0 +1,308 @@
+package blackjack.daniel.ibanez;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the history of the hands played to a text file on a background thread.
+ * Records are put on a bounded queue and written in batches, and the file is
+ * flushed at a fixed interval. When the file gets too big or too old it is
+ * renamed with a time stamp and compressed with gzip, and a new file is started.
+ * If writing fails, the background thread stops and later records are dropped
+ * and counted, so players never wait for a writer that is gone. Threads that
+ * must never wait, like the event dispatch thread, add with tryAdd, which
+ * drops the record when the queue is full.
+ *
+ */
+public class HandHistory {
+	private static final String NEW_LINE = System.getProperty("line.separator");
+	private static final int BATCH = 256;	// records written at once
+
+	private File file;
+	private BlockingQueue<String> queue;
+	private long flushMillis;
+	private long maxBytes;
+	private long maxMillis;
+	private BufferedWriter writer;
+	private CountingStream out;		// counts the bytes written to the current file
+	private long opened;
+	private int rotations;
+	private Thread thread;
+	private Thread hook;		// closes the history when the program exits
+	private volatile boolean closed;
+	private volatile boolean stopped;		// background thread has ended
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * Starts a new history file, replacing an old file with the same name.
+	 * @param file			history file
+	 * @param capacity		records waiting to be written before add waits
+	 * @param flushMillis	time between flushes of the file (ms)
+	 * @param maxBytes		size of the file that starts a new file
+	 * @param maxMillis		age of the file that starts a new file (ms)
+	 * @throws IOException when the file cannot be created
+	 */
+	public HandHistory(File file, int capacity, long flushMillis, long maxBytes, long maxMillis)
+			throws IOException {
+		this.file = file;
+		this.flushMillis = flushMillis;
+		this.maxBytes = maxBytes;
+		this.maxMillis = maxMillis;
+		queue = new ArrayBlockingQueue<String>(capacity);
+		open(false);
+
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeRecords();
+			}
+		}, "hand-history");
+		thread.setDaemon(true);
+		thread.start();
+
+		// write what is left when the program exits
+		hook = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				close();
+			}
+		});
+		Runtime.getRuntime().addShutdownHook(hook);
+	}
+
+	/**
+	 * Adds a record to the history. Waits while the queue is full, unless the
+	 * history is closed or writing has failed: then the record is dropped.
+	 * @param record	text to be written, may span several lines
+	 * @return			true if the record will be written
+	 */
+	public boolean add(String record) {
+		try {
+			while (!closed && !stopped)
+				if (queue.offer(record, flushMillis, TimeUnit.MILLISECONDS))
+					return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		dropped.increment();
+		return false;
+	}
+
+	/**
+	 * Adds a record to the history without waiting. The record is dropped
+	 * when the queue is full, the history is closed or writing has failed.
+	 * @param record	text to be written, may span several lines
+	 * @return			true if the record will be written
+	 */
+	public boolean tryAdd(String record) {
+		if (!closed && !stopped && queue.offer(record))
+			return true;
+		dropped.increment();
+		return false;
+	}
+
+	/**
+	 * @return	records dropped because the queue was full, the history was
+	 * 			closed or writing failed
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Writes all records waiting in the queue and closes the file.
+	 */
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			Runtime.getRuntime().removeShutdownHook(hook);
+		} catch (IllegalStateException e) {
+			// the program is exiting, close is called by the hook
+		}
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Background thread: takes records from the queue and writes them in batches.
+	 */
+	private void writeRecords() {
+		ArrayList<String> batch = new ArrayList<String>(BATCH);
+		long lastFlush = System.currentTimeMillis();
+		int records = 0;		// records written since the last flush
+		long flushed = 0;		// bytes in the file at the last flush
+		try {
+			while (!closed || !queue.isEmpty()) {
+				String record = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+				if (record != null) {
+					batch.add(record);
+					queue.drainTo(batch, BATCH - 1);
+					for (String text : batch)
+						writer.write(text);
+					records += batch.size();
+					batch.clear();
+				}
+
+				long now = System.currentTimeMillis();
+				if (now - lastFlush >= flushMillis) {
+					Object flush = FlightRecorder.RECORDER.beginFlush();
+					writer.flush();
+					if (flush != null)
+						FlightRecorder.RECORDER.commitFlush(flush, records, out.count - flushed);
+					records = 0;
+					flushed = out.count;
+					lastFlush = now;
+				}
+				// bytes still buffered are counted once they reach the file
+				if (out.count > 0 && (out.count >= maxBytes || now - opened >= maxMillis)) {
+					rotate();
+					flushed = 0;
+				}
+			}
+			writer.close();
+		} catch (IOException e) {
+			System.err.println("Error: Hand history stopped: " + e);
+			try {
+				writer.close();
+			} catch (IOException ignored) {
+				// the file is given up
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			stopped = true;
+			dropped.add(queue.size());
+			queue.clear();
+		}
+	}
+
+	/**
+	 * Opens the history file. Its size and age are counted from now, so a file
+	 * that could not be rotated is tried again after another maxBytes or maxMillis.
+	 * @param append	true to write at the end of the file, false to empty it
+	 */
+	private void open(boolean append) throws IOException {
+		out = new CountingStream(new FileOutputStream(file, append));
+		writer = new BufferedWriter(new OutputStreamWriter(out));
+		opened = System.currentTimeMillis();
+	}
+
+	/**
+	 * Closes the current file, compresses it under a new name and opens a new
+	 * file. When the file cannot be renamed, writing goes on at its end.
+	 */
+	private void rotate() throws IOException {
+		writer.close();
+		String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		File rotated = new File(file.getPath() + "." + stamp + "-" + (++rotations));
+		if ( !file.renameTo(rotated)) {
+			System.err.println("Error: Unable to rename " + file + " to " + rotated);
+			open(true);
+			return;
+		}
+
+		open(false);
+		try {
+			compress(rotated);
+		} catch (IOException e) {
+			System.err.println("Error: Unable to compress " + rotated + ": " + e);
+		}
+	}
+
+	/**
+	 * Compresses a file with gzip and deletes the original.
+	 * @param source	file to compress
+	 */
+	private static void compress(File source) throws IOException {
+		File target = new File(source.getPath() + ".gz");
+		try (InputStream in = new FileInputStream(source);
+				OutputStream out = new GZIPOutputStream(new FileOutputStream(target))) {
+			byte[] buffer = new byte[64 * 1024];
+			int n;
+			while ((n = in.read(buffer)) > 0)
+				out.write(buffer, 0, n);
+		}
+		if (!source.delete())
+			System.err.println("Error: Unable to delete " + source);
+	}
+
+	/**
+	 * Stream that counts the bytes written through it.
+	 */
+	private static class CountingStream extends FilterOutputStream {
+		private long count;
+
+		CountingStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+
+	/**
+	 * Text written when a new game starts.
+	 * @param playerName	name entered by the user
+	 * @return				record text
+	 */
+	public static String newGameText(String playerName) {
+		return "-- New game: " + playerName + NEW_LINE;
+	}
+
+	/**
+	 * Text of a hand once all players and dealer have played.
+	 * @param players	players at the table
+	 * @param dealer	dealer at the table
+	 * @return			record text
+	 */
+	public static String handText(Player[] players, Dealer dealer) {
+		StringBuilder sb = new StringBuilder("-- NEW hand --------------------------------------------------");
+		sb.append(NEW_LINE);
+		for (Player player : players)
+			sb.append(player.toString()).append(NEW_LINE);
+		return sb.append("Dealer: ").append(dealer.toString()).toString();
+	}
+
+	/**
+	 * Text of the players' balances once the hand has been settled.
+	 * @param players	players at the table
+	 * @return			record text
+	 */
+	public static String balanceText(Player[] players) {
+		StringBuilder sb = new StringBuilder(NEW_LINE);
+		sb.append("-- Update balance").append(NEW_LINE);
+		for (Player player : players)
+			sb.append(player.toString()).append(NEW_LINE);
+		return sb.append(NEW_LINE).toString();
+	}
+
+}
@@ -0,0 +1,145 @@
+package blackjack.daniel.ibanez;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Overlapped cards of a hand drawn into one image. The image is only drawn
+ * again when the hand changes, so painting a panel draws a single image.
+ * On screens that scale the graphics (HiDPI), a variant is drawn at the size
+ * of the screen pixels for every scale, so no scaling happens while painting.
+ *
+ */
+class HandImage {
+	private int[] images;		// card ids, CardImages.BACK or CardImages.EMPTY
+	private int size;
+	private boolean firstHidden;
+	private Map<Double, BufferedImage> variants;	// composite image per scale
+
+	public HandImage() {
+		images = new int[12];
+		variants = new HashMap<Double, BufferedImage>();
+	}
+
+	/**
+	 * Adds an image on top of the hand.
+	 * @param image		card id, CardImages.BACK or CardImages.EMPTY
+	 */
+	public void add(int image) {
+		if (size == images.length)
+			images = Arrays.copyOf(images, size * 2);
+		images[size++] = image;
+		variants.clear();
+	}
+
+	/**
+	 * Changes the hand to the given images. Images added on top of the current
+	 * ones keep the hand, other changes start it again.
+	 * @param cards		card ids, CardImages.BACK or CardImages.EMPTY
+	 * @return			true if the hand has changed
+	 */
+	public boolean set(int[] cards) {
+		int same = 0;
+		while (same < size && same < cards.length && images[same] == cards[same])
+			same++;
+		if (same == size && same == cards.length)
+			return false;
+
+		if (same < size)
+			clear();
+		for (int i = size; i < cards.length; ++i)
+			add(cards[i]);
+		return true;
+	}
+
+	/**
+	 * Removes all images.
+	 */
+	public void clear() {
+		size = 0;
+		variants.clear();
+	}
+
+	/**
+	 * @param hidden	true if the first card is drawn on its back
+	 * @return			true if the hand has changed
+	 */
+	public boolean setFirstHidden(boolean hidden) {
+		if (hidden == firstHidden)
+			return false;
+		firstHidden = hidden;
+		variants.clear();
+		return true;
+	}
+
+	/**
+	 * Draws the hand at the top left corner.
+	 * @param g		graphics of the panel
+	 */
+	public void paint(Graphics g) {
+		if (size == 0)
+			return;
+
+		Graphics2D g2 = (Graphics2D) g;
+		double scale = g2.getTransform().getScaleX();
+		BufferedImage composite = variants.get(scale);
+		if (composite == null) {
+			composite = compose(g2, scale);
+			variants.put(scale, composite);
+		}
+
+		if (scale == 1)
+			g2.drawImage(composite, 0, 0, null);
+		else
+			g2.drawImage(composite, 0, 0, getWidth(), getHeight(), null);
+	}
+
+	/**
+	 * @return	width of the overlapped cards
+	 */
+	public int getWidth() {
+		int cardWidth = CardImages.get(images[0]).getWidth();
+		return cardWidth + (size - 1) * (cardWidth / 6);
+	}
+
+	/**
+	 * @return	height of the cards
+	 */
+	public int getHeight() {
+		return CardImages.get(images[0]).getHeight();
+	}
+
+	/**
+	 * Draws all cards into a new image with the pixel layout of the screen.
+	 * @param g2		graphics of the panel
+	 * @param scale		screen pixels per panel pixel
+	 * @return			overlapped cards
+	 */
+	private BufferedImage compose(Graphics2D g2, double scale) {
+		int width = (int) Math.ceil(getWidth() * scale);
+		int height = (int) Math.ceil(getHeight() * scale);
+		BufferedImage composite = g2.getDeviceConfiguration().
+				createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+
+		Graphics2D cg = composite.createGraphics();
+		if (scale != 1) {
+			cg.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+			cg.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			cg.scale(scale, scale);
+		}
+		int overlap = CardImages.get(images[0]).getWidth() / 6;
+		for (int i = 0; i < size; ++i) {
+			int image = firstHidden && i == 0 ? CardImages.BACK : images[i];
+			cg.drawImage(CardImages.get(image), overlap * i, 0, null);
+		}
+		cg.dispose();
+		return composite;
+	}
+
+}
@@ -0,0 +1,242 @@
+package blackjack.daniel.ibanez;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed layout binary record of one hand played at a Table. Every record takes
+ * RECORD_SIZE bytes, so record n of a file starts at n * RECORD_SIZE and a file
+ * can be scanned or searched without parsing.
+ *
+ * Layout (big endian, offsets in bytes):
+ * <pre>
+ *   0  long     hand number
+ *   8  byte     seats
+ *   9  byte     dealer status
+ *  10  byte     dealer cards
+ *  11  byte     unused
+ *  12  byte[22] dealer card ids
+ *  34  seat 0 to seat 6, SEAT_SIZE bytes each:
+ *        0  byte     status after the balance update
+ *        1  byte     winner, -1 if the seat did not play
+ *        2  byte     cards
+ *        3  byte     last action, -1 if the player took no decision
+ *        4  byte[22] card ids
+ *       26  int      bet, doubled bets included
+ *       30  int      balance after the balance update
+ * </pre>
+ * Enumerations are stored as their ordinal. A hand only goes on after a hit,
+ * so the actions of a seat are a hit for every card after the first two (the
+ * card of a double excepted) followed by the last action.
+ *
+ */
+public class HandRecord {
+	public static final int MAX_SEATS = 7;
+	public static final int MAX_CARDS = 22;		// 21 Aces and one more card
+	public static final int SEAT_SIZE = 4 + MAX_CARDS + 8;
+	public static final int RECORD_SIZE = 12 + MAX_CARDS + MAX_SEATS * SEAT_SIZE;	// 272
+
+	private static final int SEATS = 8;
+	private static final int DEALER_STATUS = 9;
+	private static final int DEALER_CARDS = 10;
+	private static final int DEALER_CARD_IDS = 12;
+	private static final int SEAT = DEALER_CARD_IDS + MAX_CARDS;
+	private static final int STATUS = 0;
+	private static final int WINNER = 1;
+	private static final int CARDS = 2;
+	private static final int LAST_ACTION = 3;
+	private static final int CARD_IDS = 4;
+	private static final int BET = CARD_IDS + MAX_CARDS;
+	private static final int BALANCE = BET + 4;
+
+	private ByteBuffer buffer;
+	private int offset;
+
+	/**
+	 * View of the records of a buffer. Reading a field reads the buffer,
+	 * nothing is copied.
+	 * @param buffer	buffer holding whole records
+	 */
+	public HandRecord(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Moves the view to the first record of another buffer.
+	 * @param buffer	buffer holding whole records
+	 */
+	void setBuffer(ByteBuffer buffer) {
+		this.buffer = buffer;
+		offset = 0;
+	}
+
+	/**
+	 * Moves the view to another record of the buffer.
+	 * @param index		record number in the buffer
+	 */
+	public void moveTo(int index) {
+		offset = index * RECORD_SIZE;
+	}
+
+	/**
+	 * Appends the last hand played at a table to a buffer.
+	 * @param buffer	buffer with at least RECORD_SIZE bytes remaining
+	 * @param table		table that has just played a hand
+	 * @throws IllegalArgumentException when the table has more than MAX_SEATS seats
+	 */
+	public static void put(ByteBuffer buffer, Table table) throws IllegalArgumentException {
+		if (table.getSeats() > MAX_SEATS)
+			throw new IllegalArgumentException("Too many seats: " + table.getSeats());
+
+		int start = buffer.position();
+		for (int i = 0; i < RECORD_SIZE; i += 8)
+			buffer.putLong(start + i, 0);
+
+		Dealer dealer = table.getDealer();
+		buffer.putLong(table.getHandsPlayed());
+		buffer.put((byte) table.getSeats());
+		buffer.put(ordinal(dealer.getStatus()));
+		putCards(buffer, start + DEALER_CARDS, dealer.getHand());
+
+		for (int i = 0; i < table.getSeats(); ++i) {
+			int seat = start + SEAT + i * SEAT_SIZE;
+			Player player = table.getPlayer(i);
+			buffer.put(seat + STATUS, ordinal(player.getStatus()));
+			buffer.put(seat + WINNER, ordinal(table.getWinner(i)));
+			buffer.put(seat + LAST_ACTION, ordinal(table.getLastAction(i)));
+			putCards(buffer, seat + CARDS, player.getHand());
+			buffer.putInt(seat + BET, table.getLastBet(i));
+			buffer.putInt(seat + BALANCE, player.getBalance());
+		}
+		buffer.position(start + RECORD_SIZE);
+	}
+
+	/**
+	 * Writes the number of cards of a hand followed by the card ids. Cards that do
+	 * not fit are left out.
+	 */
+	private static void putCards(ByteBuffer buffer, int index, Hand hand) {
+		int size = Math.min(hand.getSize(), MAX_CARDS);
+		buffer.put(index, (byte) size);
+		// card ids follow 2 bytes after the count for dealer and seats alike
+		for (int i = 0; i < size; ++i)
+			buffer.put(index + 2 + i, (byte) hand.getCardId(i));
+	}
+
+	private static byte ordinal(Enum<?> e) {
+		return e == null ? -1 : (byte) e.ordinal();
+	}
+
+	/**
+	 * @return	number of the hand at its table, starting at 1
+	 */
+	public long getHandNumber() {
+		return buffer.getLong(offset);
+	}
+
+	/**
+	 * @return	seats at the table
+	 */
+	public int getSeats() {
+		return buffer.get(offset + SEATS);
+	}
+
+	/**
+	 * @return	dealer's status at the end of the hand, null if the dealer did not play
+	 */
+	public Status getDealerStatus() {
+		byte status = buffer.get(offset + DEALER_STATUS);
+		return status < 0 ? null : Status.values()[status];
+	}
+
+	/**
+	 * @return	number of cards in the dealer's hand
+	 */
+	public int getDealerCards() {
+		return buffer.get(offset + DEALER_CARDS);
+	}
+
+	/**
+	 * @param i		position in the dealer's hand
+	 * @return		id of the card
+	 */
+	public int getDealerCardId(int i) {
+		return buffer.get(offset + DEALER_CARD_IDS + i);
+	}
+
+	/**
+	 * @param seat	player index
+	 * @return		status of the player after the balance update
+	 */
+	public Status getStatus(int seat) {
+		return Status.values()[buffer.get(offset + SEAT + seat * SEAT_SIZE + STATUS)];
+	}
+
+	/**
+	 * @param seat	player index
+	 * @return		winner of the hand, null if the seat did not play
+	 */
+	public Winner getWinner(int seat) {
+		byte winner = buffer.get(offset + SEAT + seat * SEAT_SIZE + WINNER);
+		return winner < 0 ? null : Winner.values()[winner];
+	}
+
+	/**
+	 * @param seat	player index
+	 * @return		number of cards in the player's hand
+	 */
+	public int getCards(int seat) {
+		return buffer.get(offset + SEAT + seat * SEAT_SIZE + CARDS);
+	}
+
+	/**
+	 * @param seat	player index
+	 * @param i		position in the player's hand
+	 * @return		id of the card
+	 */
+	public int getCardId(int seat, int i) {
+		return buffer.get(offset + SEAT + seat * SEAT_SIZE + CARD_IDS + i);
+	}
+
+	/**
+	 * @param seat	player index
+	 * @return		last decision of the player, null if there was none
+	 */
+	public Action getLastAction(int seat) {
+		byte action = buffer.get(offset + SEAT + seat * SEAT_SIZE + LAST_ACTION);
+		return action < 0 ? null : Action.values()[action];
+	}
+
+	/**
+	 * @param seat	player index
+	 * @return		money bet by the player, doubled bets included
+	 */
+	public int getBet(int seat) {
+		return buffer.getInt(offset + SEAT + seat * SEAT_SIZE + BET);
+	}
+
+	/**
+	 * @param seat	player index
+	 * @return		balance of the player after the balance update
+	 */
+	public int getBalance(int seat) {
+		return buffer.getInt(offset + SEAT + seat * SEAT_SIZE + BALANCE);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Hand ").append(getHandNumber());
+		for (int seat = 0; seat < getSeats(); ++seat) {
+			sb.append(" | seat ").append(seat).append(' ').append(getStatus(seat))
+				.append(' ').append(getWinner(seat)).append(" bet ").append(getBet(seat))
+				.append(" balance ").append(getBalance(seat)).append(" [");
+			for (int i = 0; i < getCards(seat); ++i)
+				sb.append(i > 0 ? ", " : "").append(Card.get(getCardId(seat, i)));
+			sb.append(']');
+		}
+		sb.append(" | dealer ").append(getDealerStatus()).append(" [");
+		for (int i = 0; i < getDealerCards(); ++i)
+			sb.append(i > 0 ? ", " : "").append(Card.get(getDealerCardId(i)));
+		return sb.append(']').toString();
+	}
+
+}
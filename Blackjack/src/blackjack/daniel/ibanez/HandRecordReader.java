@@ -0,0 +1,150 @@
+package blackjack.daniel.ibanez;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Reads files written by HandRecordWriter one record after another. The files
+ * are memory-mapped and the record returned by getRecord reads its fields
+ * straight from the mapping, so scanning copies and allocates nothing per hand.
+ * Big files are mapped in windows of whole records.
+ *
+ * Usage: java blackjack.daniel.ibanez.HandRecordReader file...
+ *
+ */
+public class HandRecordReader {
+	private static final long WINDOW = (1L << 28) / HandRecord.RECORD_SIZE * HandRecord.RECORD_SIZE;
+
+	private File[] files;
+	private int nextFile;
+	private FileChannel channel;
+	private long position;		// start of the current window in the file
+	private int records;		// records in the current window
+	private int index = -1;		// current record in the window
+	private HandRecord record;
+
+	/**
+	 * @param files		record files, read in the given order
+	 */
+	public HandRecordReader(File... files) {
+		this.files = files;
+	}
+
+	/**
+	 * Moves to the next record, opening the next file or mapping the next window
+	 * when needed.
+	 * @return	true if there is a record, false at the end of the last file
+	 * @throws IOException when a file cannot be read
+	 */
+	public boolean next() throws IOException {
+		while (index + 1 >= records) {
+			if (channel != null && position + (long) records * HandRecord.RECORD_SIZE < channel.size())
+				map(position + (long) records * HandRecord.RECORD_SIZE);
+			else if (nextFile < files.length)
+				open(files[nextFile++]);
+			else {
+				close();
+				return false;
+			}
+		}
+		record.moveTo(++index);
+		return true;
+	}
+
+	/**
+	 * @return	current record, only valid until the next call to next
+	 */
+	public HandRecord getRecord() {
+		return record;
+	}
+
+	/**
+	 * Closes the file being read.
+	 * @throws IOException when the file cannot be closed
+	 */
+	public void close() throws IOException {
+		if (channel != null)
+			channel.close();
+		channel = null;
+		records = 0;
+		index = -1;
+	}
+
+	private void open(File file) throws IOException {
+		close();
+		channel = new RandomAccessFile(file, "r").getChannel();
+		map(0);
+	}
+
+	/**
+	 * Maps the window of the current file starting at the given position.
+	 */
+	private void map(long start) throws IOException {
+		long size = Math.min(WINDOW, channel.size() - start);
+		size -= size % HandRecord.RECORD_SIZE;	// a record cut short is left out
+		position = start;
+		records = (int) (size / HandRecord.RECORD_SIZE);
+		index = -1;
+		if (records == 0) {
+			// nothing but a partial record left
+			channel.close();
+			channel = null;
+			return;
+		}
+		if (record == null)
+			record = new HandRecord(channel.map(MapMode.READ_ONLY, start, size));
+		else
+			record.setBuffer(channel.map(MapMode.READ_ONLY, start, size));
+	}
+
+	/**
+	 * Scans record files and prints the results per seat.
+	 * @param args	record files
+	 * @throws IOException when a file cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		File[] files = new File[args.length];
+		for (int i = 0; i < args.length; ++i)
+			files[i] = new File(args[i]);
+
+		long hands = 0;
+		long dealerBusts = 0;
+		long[] played = new long[HandRecord.MAX_SEATS];
+		long[] bets = new long[HandRecord.MAX_SEATS];
+		long[][] outcomes = new long[HandRecord.MAX_SEATS][Winner.values().length];
+
+		long start = System.nanoTime();
+		HandRecordReader reader = new HandRecordReader(files);
+		while (reader.next()) {
+			HandRecord record = reader.getRecord();
+			hands++;
+			if (record.getDealerStatus() == Status.BUSTED)
+				dealerBusts++;
+			for (int seat = 0; seat < record.getSeats(); ++seat) {
+				Winner winner = record.getWinner(seat);
+				if (winner == null)
+					continue;
+				played[seat]++;
+				bets[seat] += record.getBet(seat);
+				outcomes[seat][winner.ordinal()]++;
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		for (int seat = 0; seat < HandRecord.MAX_SEATS; ++seat) {
+			if (played[seat] == 0)
+				continue;
+			System.out.println(String.format("Seat: %d  Hands: %-10d Bets: %-12d "
+					+ "Wins: %-10d Pushes: %-10d Losses: %d", seat, played[seat], bets[seat],
+					outcomes[seat][Winner.PLAYER.ordinal()], outcomes[seat][Winner.PUSH.ordinal()],
+					outcomes[seat][Winner.DEALER.ordinal()]));
+		}
+		System.out.println(String.format("Dealer busts: %d", dealerBusts));
+		System.out.println(String.format("%d hands read in %.2f s (%.0f hands/s, %.0f MB/s)",
+				hands, seconds, hands / seconds, hands * HandRecord.RECORD_SIZE / seconds / 1e6));
+	}
+
+}
@@ -0,0 +1,205 @@
+package blackjack.daniel.ibanez;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes HandRecords to a binary file on a background thread. The table fills
+ * a block of records and hands it to the writer thread, which writes it with
+ * a single channel write while the table fills the next block. Blocks are
+ * reused, so writing a hand allocates nothing.
+ *
+ * When the file gets too big it is renamed with a time stamp and a new file
+ * is started. Files always hold whole records. If writing fails, the writer
+ * thread gives all blocks back and stops, and the table stops recording
+ * instead of waiting for it.
+ *
+ * A writer belongs to one table; tables playing on different threads need
+ * their own writers.
+ *
+ */
+public class HandRecordWriter {
+	private static final int BLOCKS = 4;	// blocks filled or being written
+	private static final ByteBuffer END = ByteBuffer.allocate(0);	// last block
+
+	private File file;
+	private long maxBytes;
+	private BlockingQueue<ByteBuffer> full;
+	private BlockingQueue<ByteBuffer> free;
+	private ByteBuffer block;
+	private FileChannel channel;
+	private long bytes;
+	private int rotations;
+	private Thread thread;
+	private volatile boolean closed;
+	private volatile boolean stopped;		// writer thread has ended
+
+	/**
+	 * Starts a new record file, replacing an old file with the same name.
+	 * @param file			record file
+	 * @param blockRecords	records written at once
+	 * @param maxBytes		size of the file that starts a new file
+	 * @throws IOException when the file cannot be created
+	 */
+	public HandRecordWriter(File file, int blockRecords, long maxBytes) throws IOException {
+		this.file = file;
+		this.maxBytes = maxBytes;
+		full = new ArrayBlockingQueue<ByteBuffer>(BLOCKS);
+		free = new ArrayBlockingQueue<ByteBuffer>(BLOCKS);
+		for (int i = 0; i < BLOCKS; ++i)
+			free.add(ByteBuffer.allocateDirect(blockRecords * HandRecord.RECORD_SIZE));
+		block = free.poll();
+		open(false);
+
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeBlocks();
+			}
+		}, "hand-records");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Adds the last hand played at a table. Waits while all blocks are being
+	 * written. Nothing is recorded once writing has failed.
+	 * @param table		table that has just played a hand
+	 */
+	public void write(Table table) {
+		if (closed || stopped)
+			return;
+		HandRecord.put(block, table);
+		if (block.remaining() < HandRecord.RECORD_SIZE)
+			handOver();
+	}
+
+	/**
+	 * Writes the records added so far and closes the file.
+	 */
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			if ( !stopped) {
+				full.put(block);
+				full.put(END);
+			}
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Gives the current block to the writer thread and takes a free one. The
+	 * table must never fill a block the writer thread owns, so an interrupt
+	 * does not stop the hand over: the thread is interrupted again once it is
+	 * done. Neither wait is long, as the writer thread gives all blocks back
+	 * when it stops.
+	 */
+	private void handOver() {
+		boolean interrupted = false;
+		boolean handed = false;
+		while (!handed) {
+			try {
+				full.put(block);
+				handed = true;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		block = null;
+		while (block == null) {
+			try {
+				block = free.take();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Background thread: writes the blocks handed over by the table. When it
+	 * ends, all blocks it holds are free again, so the table never waits for it.
+	 */
+	private void writeBlocks() {
+		ByteBuffer buffer = null;		// block being written
+		try {
+			while ((buffer = full.take()) != END) {
+				buffer.flip();
+				while (buffer.hasRemaining())
+					bytes += channel.write(buffer);
+				buffer.clear();
+				free.add(buffer);
+				buffer = null;
+
+				if (bytes >= maxBytes)
+					rotate();
+			}
+			channel.close();
+		} catch (IOException e) {
+			System.err.println("Error: Hand records stopped: " + e);
+			try {
+				channel.close();
+			} catch (IOException ignored) {
+				// the file is given up
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			stopped = true;
+			if (buffer != null && buffer != END) {
+				buffer.clear();
+				free.add(buffer);
+			}
+			for (ByteBuffer waiting; (waiting = full.poll()) != null; )
+				if (waiting != END) {
+					waiting.clear();
+					free.add(waiting);
+				}
+		}
+	}
+
+	/**
+	 * Opens the record file. Its size is counted from now, so a file that could
+	 * not be rotated is tried again after another maxBytes.
+	 * @param append	true to write at the end of the file, false to empty it
+	 */
+	private void open(boolean append) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		if (append)
+			raf.seek(raf.length());
+		else
+			raf.setLength(0);
+		channel = raf.getChannel();
+		bytes = 0;
+	}
+
+	/**
+	 * Closes the current file under a new name and opens a new file. When the
+	 * file cannot be renamed, writing goes on at its end.
+	 */
+	private void rotate() throws IOException {
+		channel.close();
+		String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		File rotated = new File(file.getPath() + "." + stamp + "-" + (++rotations));
+		if (file.renameTo(rotated))
+			open(false);
+		else {
+			System.err.println("Error: Unable to rename " + file + " to " + rotated);
+			open(true);
+		}
+	}
+
+}
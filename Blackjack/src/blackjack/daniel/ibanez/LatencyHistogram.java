@@ -0,0 +1,92 @@
+package blackjack.daniel.ibanez;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in ns that any number of threads record into without
+ * locks. Values are counted in buckets that grow with the value: below 8 ns
+ * every value has its own bucket, above it every power of two is split into 8
+ * buckets, so a percentile is known within 12.5% for any duration.
+ *
+ */
+public class LatencyHistogram {
+	private static final int SUB_BITS = 3;
+	private static final int SUB = 1 << SUB_BITS;		// buckets per power of two
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param nanos		duration, negative durations count as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		counts.incrementAndGet(bucket(value));
+		total.incrementAndGet();
+		if (value > max.get())
+			max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * @return	number of durations recorded
+	 */
+	public long getCount() {
+		return total.get();
+	}
+
+	/**
+	 * @return	longest duration recorded (ns)
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile	percentile between 0 and 100
+	 * @return				highest value of the bucket holding the percentile (ns),
+	 * 						never more than the longest duration, 0 if empty
+	 */
+	public long getPercentile(double percentile) {
+		long count = total.get();
+		if (count == 0)
+			return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += counts.get(i);
+			if (seen >= rank)
+				return Math.min(highest(i), max.get());
+		}
+		return max.get();	// durations recorded while reading
+	}
+
+	/**
+	 * Forgets all durations. Durations recorded meanwhile may be lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; ++i)
+			counts.set(i, 0);
+		total.set(0);
+		max.set(0);
+	}
+
+	private static int bucket(long value) {
+		if (value < SUB)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return (shift + 1) * SUB + (int) ((value >>> shift) & (SUB - 1));
+	}
+
+	private static long highest(int bucket) {
+		if (bucket < SUB)
+			return bucket;
+		int shift = bucket / SUB - 1;
+		long lowest = (long) (SUB + bucket % SUB) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+}
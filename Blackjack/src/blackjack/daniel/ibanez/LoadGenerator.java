@@ -0,0 +1,195 @@
+package blackjack.daniel.ibanez;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Client that opens many connections to a GameServer, one table each, and
+ * plays them all at once from one selector thread with the advanced strategy.
+ * Every connection always waits for the answer to its last command, so the
+ * load grows with the number of connections. Prints the hands and decisions
+ * played per second and the mean time the server took to answer.
+ *
+ * Usage: java blackjack.daniel.ibanez.LoadGenerator [connections] [seconds] [host] [port]
+ *
+ */
+public class LoadGenerator {
+	private Selector selector;
+	private StrategyTable strategy;
+	private long hands;
+	private long decisions;
+	private long frames;
+	private long waited;		// ns between commands and their frames
+	private long errors;
+	private long bustOuts;
+
+	/**
+	 * Connects all the clients and sends their first DEAL once connected.
+	 * @param address		address of the server
+	 * @param connections	number of tables to play
+	 * @throws IOException when a connection cannot be opened
+	 */
+	public LoadGenerator(InetSocketAddress address, int connections) throws IOException {
+		selector = Selector.open();
+		strategy = StrategyTable.compile(new AdvancedStrategy());
+		for (int i = 0; i < connections; ++i) {
+			SocketChannel channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			channel.connect(address);
+			channel.register(selector, SelectionKey.OP_CONNECT, new Client());
+		}
+	}
+
+	/**
+	 * Plays until the time is up.
+	 * @param millis	time to play (ms)
+	 * @throws IOException when a connection fails
+	 */
+	public void run(long millis) throws IOException {
+		long end = System.currentTimeMillis() + millis;
+		while (System.currentTimeMillis() < end) {
+			selector.select(100);
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				SocketChannel channel = (SocketChannel) key.channel();
+				Client client = (Client) key.attachment();
+				if (key.isConnectable()) {
+					channel.finishConnect();
+					key.interestOps(SelectionKey.OP_READ);
+					client.send(channel, GameServer.DEAL);
+				}
+				else if (key.isReadable()) {
+					if (channel.read(client.in) < 0)
+						throw new IOException("Connection closed by the server");
+					client.in.flip();
+					while (client.in.remaining() >= GameServer.FRAME)
+						client.frame(channel);
+					client.in.compact();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Closes all connections.
+	 * @throws IOException when a connection cannot be closed
+	 */
+	public void close() throws IOException {
+		for (SelectionKey key : selector.keys())
+			key.channel().close();
+		selector.close();
+	}
+
+	/**
+	 * Hand of one connection. A connection sends one command at a time, so a
+	 * frame never waits behind another in the output buffer.
+	 */
+	private class Client {
+		final ByteBuffer in = ByteBuffer.allocate(GameServer.FRAME * 4);
+		private final ByteBuffer out = ByteBuffer.allocate(1);
+		private final Hand hand = new Hand();
+		private long sent;		// ns when the last command was sent
+
+		/**
+		 * Sends a command. The socket buffer always has room for a byte,
+		 * since one command is sent per frame received.
+		 */
+		void send(SocketChannel channel, byte command) throws IOException {
+			out.clear();
+			out.put(command).flip();
+			sent = System.nanoTime();
+			channel.write(out);
+		}
+
+		/**
+		 * Reads a frame and answers it.
+		 */
+		void frame(SocketChannel channel) throws IOException {
+			waited += System.nanoTime() - sent;
+			frames++;
+			byte type = in.get();
+			byte status = in.get();
+			in.get();						// winner
+			int dealer = in.get();
+			int cards = in.get();
+			for (int i = 0; i < 2; ++i) {
+				int card = in.get();
+				if (i < cards)
+					hand.addCard(card);
+			}
+			in.get();						// hand value
+			int balance = in.getInt();
+
+			if (type == GameServer.ERROR && dealer >= 0) {
+				// should not happen, give up the hand
+				errors++;
+				send(channel, GameServer.STAND);
+			}
+			else if (type == GameServer.ERROR || type == GameServer.RESULT) {
+				if (type == GameServer.ERROR)
+					errors++;
+				else
+					hands++;
+				if (status == Status.DEAD.ordinal())
+					bustOuts++;
+				hand.clear();
+				send(channel, GameServer.DEAL);
+			}
+			else {
+				decisions++;
+				send(channel, decide(Card.get(dealer).getBlackjackValue(), balance));
+			}
+		}
+
+		/**
+		 * @param dealer	value of the dealer's up card
+		 * @param balance	balance of the player, the bet is always MIN_BET
+		 * @return			command for the strategy's decision
+		 */
+		private byte decide(int dealer, int balance) {
+			boolean canDouble = hand.getSize() == 2 && balance >= Table.MIN_BET;
+			switch (strategy.playingStrategy(dealer, hand)) {
+				case S:
+					return GameServer.STAND;
+				case Dh:
+					return canDouble ? GameServer.DOUBLE : GameServer.HIT;
+				case Ds:
+					return canDouble ? GameServer.DOUBLE : GameServer.STAND;
+				default:
+					return GameServer.HIT;
+			}
+		}
+	}
+
+	/**
+	 * Main method
+	 * @param args	number of connections (default 1000), seconds to play (default 10),
+	 * 				server host (default localhost) and port (default 7777)
+	 * @throws IOException when the server cannot be reached
+	 */
+	public static void main(String[] args) throws IOException {
+		int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		String host = args.length > 2 ? args[2] : "localhost";
+		int port = args.length > 3 ? Integer.parseInt(args[3]) : GameServer.PORT;
+
+		LoadGenerator load = new LoadGenerator(new InetSocketAddress(host, port), connections);
+		load.run(seconds * 1000L);
+		load.close();
+
+		System.out.println(String.format("Tables: %d  Hands: %d  Decisions: %d  Errors: %d  BustOuts: %d",
+				connections, load.hands, load.decisions, load.errors, load.bustOuts));
+		System.out.println(String.format("Hands/s: %.0f  Decisions/s: %.0f  Mean answer: %.1f us",
+				load.hands / (double) seconds, load.decisions / (double) seconds,
+				load.frames > 0 ? load.waited / 1e3 / load.frames : 0));
+	}
+
+}
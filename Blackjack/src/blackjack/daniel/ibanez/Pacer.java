@@ -0,0 +1,94 @@
+package blackjack.daniel.ibanez;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.Timer;
+
+/**
+ * Enumeration of the speeds a game can be played at. The pauses of the game
+ * are multiplied by the factor of the speed.
+ *
+ */
+enum Speed {
+	REALTIME("Real time", 1), ACCELERATED("Accelerated", 0.2), TURBO("Turbo", 0);
+
+	private final String label;
+	final double factor;
+
+	private Speed(String label, double factor) {
+		this.label = label;
+		this.factor = factor;
+	}
+
+	@Override
+	public String toString() {
+		return label;
+	}
+}
+
+/**
+ * Paces the game, so cards can be followed on screen. The pauses are given in
+ * real time ms and shortened according to the current speed, which can be
+ * changed at any time from any thread. In TURBO hands are played without any
+ * pause, and games without human player are not paced at all: GameLogic
+ * plays them on a headless Table.
+ *
+ */
+class Pacer {
+	private volatile Speed speed;
+
+	/**
+	 * @param speed		speed to start with
+	 */
+	public Pacer(Speed speed) {
+		this.speed = speed;
+	}
+
+	/**
+	 * @return	current speed
+	 */
+	public Speed getSpeed() {
+		return speed;
+	}
+
+	/**
+	 * @param speed		new speed, used from the next pause on
+	 */
+	public void setSpeed(Speed speed) {
+		this.speed = speed;
+	}
+
+	/**
+	 * Sleeps the calling thread. Must not be called on the event thread.
+	 * @param ms	length of the pause at real time speed
+	 */
+	public void pause(int ms) {
+		long delay = Math.round(ms * speed.factor);
+		if (delay == 0)
+			return;
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Runs a task on the event thread after a pause, without blocking the event
+	 * thread meanwhile.
+	 * @param ms		length of the pause at real time speed
+	 * @param task		task to run
+	 */
+	public void later(int ms, final Runnable task) {
+		Timer timer = new Timer((int) Math.round(ms * speed.factor), new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				task.run();
+			}
+		});
+		timer.setRepeats(false);
+		timer.start();
+	}
+
+}
@@ -0,0 +1,169 @@
+package blackjack.daniel.ibanez;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Runs a simulation on all cores with fork/join. The hands are split into
+ * fixed size blocks, and every block is played on its own table with its own
+ * random generator. The seeds of the blocks are taken in order from one master
+ * seed, so a run gives the same results whatever the number of threads.
+ *
+ * Given a target width, the simulation stops once the 95% confidence interval
+ * of the EV of every seat is narrower than it, and the number of hands becomes
+ * a limit. Blocks are then played in rounds of ROUND blocks, and the interval
+ * is checked after every round.
+ *
+ * Usage: java blackjack.daniel.ibanez.ParallelSimulator [hands] [seed] [threads] [decks] [penetration] [width]
+ *
+ */
+public class ParallelSimulator {
+	private static final int BLOCK = 10000;	// hands played on one table
+	private static final int ROUND = 64;		// blocks played between checks of the interval
+
+	private Supplier<PlayerAI[]> seats;
+	private long seed;
+	private int decks;
+	private double penetration;
+
+	/**
+	 * Plays with a single deck that is shuffled before every hand.
+	 * @param seed		master seed of the simulation
+	 * @param seats		creates the computer players for a new table
+	 */
+	public ParallelSimulator(long seed, Supplier<PlayerAI[]> seats) {
+		this(seed, 1, 0, seats);
+	}
+
+	/**
+	 * @param seed			master seed of the simulation
+	 * @param decks			number of decks in the shoe of every table
+	 * @param penetration	part of the shoe dealt before the cut card comes out
+	 * @param seats			creates the computer players for a new table
+	 */
+	public ParallelSimulator(long seed, int decks, double penetration, Supplier<PlayerAI[]> seats) {
+		this.seed = seed;
+		this.decks = decks;
+		this.penetration = penetration;
+		this.seats = seats;
+	}
+
+	/**
+	 * Plays the given number of hands on the given pool.
+	 * @param hands		number of hands to play
+	 * @param pool		pool running the blocks
+	 * @return			results of all blocks added together, no hands if hands is less than 1
+	 */
+	public Simulator run(long hands, ForkJoinPool pool) {
+		if (hands < 1)
+			return newSimulator(seed);
+
+		int blocks = (int) ((hands + BLOCK - 1) / BLOCK);
+		long[] seeds = new long[blocks];
+		SplittableRandom master = new SplittableRandom(seed);
+		for (int i = 0; i < blocks; ++i)
+			seeds[i] = master.nextLong();
+
+		return pool.invoke(new Blocks(seeds, hands, 0, blocks));
+	}
+
+	/**
+	 * Plays rounds of ROUND blocks on the given pool until the confidence
+	 * interval of every seat is narrower than the given width. The blocks take
+	 * their seeds in the same order as run, so the first hands are the same.
+	 * @param width			width of the 95% confidence interval of the EV/hand
+	 * @param maxHands		number of hands played at most
+	 * @param pool			pool running the blocks
+	 * @return				results of all blocks added together, no hands if maxHands is less than 1
+	 */
+	public Simulator runUntil(double width, long maxHands, ForkJoinPool pool) {
+		SplittableRandom master = new SplittableRandom(seed);
+		Simulator result = newSimulator(seed);
+		long played = 0;
+		while (played < maxHands && (played == 0 || result.getWidth() > width)) {
+			long hands = Math.min((long) ROUND * BLOCK, maxHands - played);
+			long[] seeds = new long[(int) ((hands + BLOCK - 1) / BLOCK)];
+			for (int i = 0; i < seeds.length; ++i)
+				seeds[i] = master.nextLong();
+
+			result.merge(pool.invoke(new Blocks(seeds, hands, 0, seeds.length)));
+			played += hands;
+		}
+		return result;
+	}
+
+	/**
+	 * @param seed		seed of the shoe
+	 * @return			simulator of a new table with its own shoe and computer players
+	 */
+	private Simulator newSimulator(long seed) {
+		return new Simulator(new Shoe(decks, penetration, new SplittableRandom(seed)), seats.get());
+	}
+
+	/**
+	 * Task that plays a range of blocks, splitting the range in two halves
+	 * until only one block is left.
+	 *
+	 */
+	private class Blocks extends RecursiveTask<Simulator> {
+		private static final long serialVersionUID = 1L;
+		private long[] seeds;
+		private long hands;
+		private int from, to;
+
+		Blocks(long[] seeds, long hands, int from, int to) {
+			this.seeds = seeds;
+			this.hands = hands;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Simulator compute() {
+			if (to - from == 1) {
+				Simulator simulator = newSimulator(seeds[from]);
+				simulator.run(Math.min(BLOCK, hands - (long) from * BLOCK));
+				return simulator;
+			}
+
+			int middle = (from + to) >>> 1;
+			Blocks left = new Blocks(seeds, hands, from, middle);
+			left.fork();
+			Simulator right = new Blocks(seeds, hands, middle, to).compute();
+			Simulator result = left.join();
+			result.merge(right);
+			return result;
+		}
+	}
+
+	/**
+	 * Main method
+	 * @param args	number of hands (default 10000000), master seed (default 1),
+	 * 				number of threads (default all cores), decks in the shoe (default 6),
+	 * 				penetration (default 0.75) and width of the confidence interval
+	 * 				the simulation stops at (default none: all hands are played)
+	 */
+	public static void main(String[] args) {
+		long hands = args.length > 0 ? Long.parseLong(args[0]) : 10000000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) :
+			Runtime.getRuntime().availableProcessors();
+		int decks = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+		double penetration = args.length > 4 ? Double.parseDouble(args[4]) : 0.75;
+		double width = args.length > 5 ? Double.parseDouble(args[5]) : 0;
+
+		ParallelSimulator simulator = new ParallelSimulator(seed, decks, penetration, Simulator::aiSeats);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		Simulator result = width > 0 ? simulator.runUntil(width, hands, pool) : simulator.run(hands, pool);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		pool.shutdown();
+
+		System.out.print(result);
+		System.out.println(String.format("%d hands in %.2f s (%.0f hands/s) on %d threads",
+				result.getHands(), seconds, result.getHands() / seconds, threads));
+	}
+
+}
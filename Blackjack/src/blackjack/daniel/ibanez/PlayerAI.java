@@ -8,6 +8,7 @@ package blackjack.daniel.ibanez;
 public class PlayerAI extends Player{
 	
 	private Strategy strategy;
+	private Counter counter;
 	
 	/**
 	 * @param name		player's name
@@ -23,6 +24,8 @@ public class PlayerAI extends Player{
 	 * @return	amount of money to bet
 	 */
 	public int getBettingStrategy() {
+		if (counter != null)
+			return ((CountingStrategy)strategy).bettingStrategy(balance, counter);
 		return strategy.bettingStrategy(balance);
 	}
 	
@@ -33,7 +36,26 @@ public class PlayerAI extends Player{
 	 * 						H (hit), S(stand), Dh(double or hit), Ds(double or stand)
 	 */
 	public Strat getPlayingStrategy(int dealerCard, Hand playerHand) {
+		if (counter != null)
+			return ((CountingStrategy)strategy).playingStrategy(dealerCard, playerHand, counter);
 		return strategy.playingStrategy(dealerCard, playerHand);
 	}
 
+	/**
+	 * @return	playing and betting strategy
+	 */
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Gives the player the count of the shoe. Only used when the strategy
+	 * is a CountingStrategy.
+	 * @param counter	count of the shoe the cards are dealt from
+	 */
+	public void setCounter(Counter counter) {
+		if (strategy instanceof CountingStrategy)
+			this.counter = counter;
+	}
+
 }
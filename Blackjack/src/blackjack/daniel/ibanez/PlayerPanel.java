@@ -4,11 +4,7 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
-import java.util.ArrayList;
 
-import javax.imageio.ImageIO;
 import javax.swing.BoxLayout;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -79,19 +75,11 @@ class PlayerPanel extends JPanel {
 	}
 
 	/**
-	 * Adds a card image to the list of cards images that represent the player's hand.
-	 * @param cardName		name of the png file containing the graphical
-	 * 						representation of the card
+	 * Changes the card images that represent the player's hand.
+	 * @param cards		card ids, CardImages.BACK or CardImages.EMPTY
 	 */
-	public void addCard(String cardName) {
-		cardPanel.addCard(cardName);
-	}
-
-	/**
-	 * Removes all card images from the list representing the player's hand.
-	 */
-	public void removeCards() {
-		cardPanel.clearCardPanel();
+	public void setCards(int[] cards) {
+		cardPanel.setCards(cards);
 	}
 	
 	/**
@@ -115,50 +103,30 @@ class PlayerPanel extends JPanel {
 	 */
 	class CardPanel extends JPanel {
 		private static final long serialVersionUID = 1L;
-		private ArrayList<BufferedImage> cardImages;
+		private HandImage hand;
 		
 		public CardPanel() {
-			cardImages = new ArrayList<BufferedImage>();
+			hand = new HandImage();
 			setBackground(new Color(50, 160, 100)); // green
 		}
 
 		/**
-		 * Adds a card image to the list of cards images that represent
-		 * the player's hand.
-		 * @param cardName		name of the png file containing the graphical
-		 * 						representation of the card
+		 * Changes the card images that represent the player's hand and repaints
+		 * the panel if they are different.
+		 * @param cards		card ids, CardImages.BACK or CardImages.EMPTY
 		 */
-		public void addCard(String cardName) {
-			BufferedImage img = null;
-			try {
-				img = ImageIO.read(getClass().getResource("/" + cardName + ".png"));
-			} catch (IOException ex) {
-				System.err.println("Error: Unable to load image: " +  cardName);
-				System.exit(1);
-			}
-			cardImages.add(img);
+		public void setCards(int[] cards) {
+			if (hand.set(cards))
+				repaint();
 		}
 		
 		/**
-		 * Draws overlapped cards
+		 * Draws overlapped cards from the image of the hand, drawn again only when
+		 * the hand changes
 		 */
 		protected void paintComponent(Graphics g) {
 			super.paintComponent(g);
-			int overlap = 0;
-			if (cardImages.size() > 0)
-				overlap = cardImages.get(0).getWidth() / 6;
-		
-			for (int i = 0; i < cardImages.size(); i++) {
-				int x = overlap * i;
-				g.drawImage(cardImages.get(i), x, 0, this);
-			}
-		}
-		
-		/**
-		 * Removes card images from list representing the player's hand
-		 */
-		public void clearCardPanel() {
-			cardImages.clear();
+			hand.paint(g);
 		}
 		
 		public Dimension getPreferredSize() {
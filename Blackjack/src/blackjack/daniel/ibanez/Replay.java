@@ -0,0 +1,143 @@
+package blackjack.daniel.ibanez;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Plays a session written by GameLogic to a SessionLog again on a headless
+ * Table. The shoes are shuffled with the seeds of the log and the human's
+ * buttons are clicked in the same order, so the cards, decisions and balances
+ * are the same as in the session. The hands are written to a history file in
+ * the format of Results.txt, so both files can be compared line by line.
+ *
+ * Usage: java blackjack.daniel.ibanez.Replay [session log] [history file]
+ *
+ */
+public class Replay {
+	private String playerName;
+	private long[] seeds;
+	private List<String> events;
+	private Table table;
+	private int nextSeed;
+
+	/**
+	 * @param log	events of a session, see SessionLog
+	 * @throws IllegalArgumentException when the log does not start with the player's name
+	 */
+	public Replay(List<String> log) throws IllegalArgumentException {
+		if (log.isEmpty() || !log.get(0).startsWith(SessionLog.NAME + " "))
+			throw new IllegalArgumentException("Not a session log");
+		playerName = log.get(0).substring(SessionLog.NAME.length() + 1);
+
+		// seeds are taken by the table when it shuffles, the rest are the events to replay
+		List<Long> shuffles = new ArrayList<Long>();
+		events = new ArrayList<String>();
+		for (String event : log.subList(1, log.size())) {
+			if (event.startsWith(SessionLog.SHUFFLE + " "))
+				shuffles.add(Long.parseLong(event.substring(SessionLog.SHUFFLE.length() + 1)));
+			else
+				events.add(event);
+		}
+		seeds = new long[shuffles.size()];
+		for (int i = 0; i < seeds.length; ++i)
+			seeds[i] = shuffles.get(i);
+
+		table = new Table(GameLogic.createShoe(), GameLogic.createPlayers(playerName));
+		table.setSeeds(new LongSupplier() {
+			@Override
+			public long getAsLong() {
+				if (nextSeed == seeds.length)
+					throw new IllegalStateException("No seed left for shoe " + (nextSeed + 1));
+				return seeds[nextSeed++];
+			}
+		});
+	}
+
+	/**
+	 * Plays all events of the log. A hand the human had not finished when the
+	 * session ended is left unfinished.
+	 * @throws IllegalStateException when the log has an unknown event or
+	 * 			the human acts outside of a hand
+	 */
+	public void run() throws IllegalStateException {
+		Player human = table.getPlayer(0);
+		boolean humanPlays = false;	// hand started, waiting for the human's decisions
+
+		for (String event : events) {
+			boolean handOver = false;
+			if (event.equals(SessionLog.DEAL)) {
+				if (humanPlays)
+					throw new IllegalStateException("New hand before the human has played");
+				if (!table.startHand())
+					break;
+				humanPlays = !(human instanceof PlayerAI) && human.getStatus() == Status.ALIVE;
+				handOver = !humanPlays;
+			}
+			else if (event.equals(SessionLog.BET_UP))
+				table.betUp(0);
+			else if (event.equals(SessionLog.BET_DOWN))
+				table.betDown(0);
+			else {
+				if (!humanPlays)
+					throw new IllegalStateException("Human acts outside of a hand: " + event);
+				if (event.equals(SessionLog.HIT))
+					table.hit(0);
+				else if (event.equals(SessionLog.DOUBLE))
+					table.doubleDown(0);	// not enough money: nothing happens, like in the game
+				else if (event.equals(SessionLog.STAND))
+					table.stand(0);
+				else
+					throw new IllegalStateException("Unknown event: " + event);
+				humanPlays = human.getStatus() == Status.ALIVE;
+				handOver = !humanPlays;
+			}
+
+			// computer players and dealer play once the human is done
+			if (handOver)
+				table.finishHand();
+		}
+	}
+
+	/**
+	 * @return	table the session is played on
+	 */
+	public Table getTable() {
+		return table;
+	}
+
+	/**
+	 * @return	name entered by the user in the session
+	 */
+	public String getPlayerName() {
+		return playerName;
+	}
+
+	/**
+	 * Main method
+	 * @param args	session log (default Session.log), history file the hands are
+	 * 				written to (default Replay.txt)
+	 * @throws IOException when a file cannot be read or written
+	 */
+	public static void main(String[] args) throws IOException {
+		File logFile = new File(args.length > 0 ? args[0] : "Session.log");
+		File historyFile = new File(args.length > 1 ? args[1] : "Replay.txt");
+
+		long start = System.nanoTime();
+		Replay replay = new Replay(SessionLog.read(logFile));
+		HandHistory history = new HandHistory(historyFile, 1024, 1000, Long.MAX_VALUE, Long.MAX_VALUE);
+		history.add(HandHistory.newGameText(replay.getPlayerName()));
+		replay.getTable().setHistory(history);
+		replay.run();
+		history.close();
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		Table table = replay.getTable();
+		for (int i = 0; i < table.getSeats(); ++i)
+			System.out.println(table.getPlayer(i));
+		System.out.println(String.format("%d hands replayed in %.3f s", table.getHandsPlayed(), seconds));
+	}
+
+}
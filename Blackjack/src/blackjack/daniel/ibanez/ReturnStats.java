@@ -0,0 +1,106 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Running statistics of the money a player wins or loses per hand, updated
+ * one hand at a time without keeping the hands. The mean and variance are
+ * kept with Welford's method, which does not lose precision over billions of
+ * hands, and two statistics gathered on different threads are merged with
+ * the formula of Chan, Golub and LeVeque, so a simulation split into blocks
+ * gives the same results as one played in a single run.
+ *
+ */
+public class ReturnStats {
+	static final double Z = 1.96;	// normal quantile of a 95% confidence interval
+
+	private long count;
+	private double mean;
+	private double m2;				// sum of squared differences from the mean
+	private long[] outcomes = new long[Winner.values().length];
+
+	/**
+	 * Adds the result of a hand.
+	 * @param net		money won (positive) or lost (negative) in the hand
+	 * @param winner	winner of the hand, null if the player did not play it
+	 */
+	public void add(double net, Winner winner) {
+		count++;
+		double delta = net - mean;
+		mean += delta / count;
+		m2 += delta * (net - mean);
+		if (winner != null)
+			outcomes[winner.ordinal()]++;
+	}
+
+	/**
+	 * Adds the hands of another statistic to this one.
+	 * @param other		statistics to add
+	 */
+	public void merge(ReturnStats other) {
+		if (other.count == 0)
+			return;
+		long total = count + other.count;
+		double delta = other.mean - mean;
+		m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+		mean += delta * other.count / total;
+		count = total;
+		for (int i = 0; i < outcomes.length; ++i)
+			outcomes[i] += other.outcomes[i];
+	}
+
+	/**
+	 * @return	number of hands added
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @param winner	winner of a hand
+	 * @return			number of hands the given winner won
+	 */
+	public long getCount(Winner winner) {
+		return outcomes[winner.ordinal()];
+	}
+
+	/**
+	 * @return	money won per hand, the expected value
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return	sample variance of the money won per hand, 0 below two hands
+	 */
+	public double getVariance() {
+		return count > 1 ? m2 / (count - 1) : 0;
+	}
+
+	/**
+	 * @return	standard deviation of the money won per hand
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * @return	standard error of the mean, infinite below two hands
+	 */
+	public double getStandardError() {
+		return count > 1 ? Math.sqrt(getVariance() / count) : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @return	width of the 95% confidence interval of the mean
+	 */
+	public double getWidth() {
+		return 2 * Z * getStandardError();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("EV/hand: %.4f +/- %.4f  SD: %.4f", mean, Z * getStandardError(),
+				getStandardDeviation());
+	}
+
+}
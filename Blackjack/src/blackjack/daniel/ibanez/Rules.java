@@ -0,0 +1,56 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Table rules that change the odds of the game. GAME holds the rules played
+ * by Table and GameLogic.
+ *
+ */
+public class Rules {
+	/**
+	 * Dealer stands on every 17, a blackjack pays 1 to 1 and double down is allowed.
+	 */
+	public static final Rules GAME = new Rules(false, 1.0, true);
+
+	private boolean hitSoft17;
+	private double blackjackPays;
+	private boolean doubleAllowed;
+
+	/**
+	 * @param hitSoft17			true if dealer hits a 17 counting an Ace as 11
+	 * @param blackjackPays		money won per unit bet with a blackjack
+	 * @param doubleAllowed		true if players can double down on their first two cards
+	 */
+	public Rules(boolean hitSoft17, double blackjackPays, boolean doubleAllowed) {
+		this.hitSoft17 = hitSoft17;
+		this.blackjackPays = blackjackPays;
+		this.doubleAllowed = doubleAllowed;
+	}
+
+	/**
+	 * @return	true if dealer hits a 17 counting an Ace as 11
+	 */
+	public boolean dealerHitsSoft17() {
+		return hitSoft17;
+	}
+
+	/**
+	 * @return	money won per unit bet with a blackjack
+	 */
+	public double getBlackjackPays() {
+		return blackjackPays;
+	}
+
+	/**
+	 * @return	true if players can double down on their first two cards
+	 */
+	public boolean doubleIsAllowed() {
+		return doubleAllowed;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s, blackjack pays %.2f, double %s", hitSoft17 ? "H17" : "S17",
+				blackjackPays, doubleAllowed ? "allowed" : "not allowed");
+	}
+
+}
@@ -0,0 +1,137 @@
+package blackjack.daniel.ibanez;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log of a game session with everything needed to play it again: the name
+ * entered by the user, the seed of every shoe and the buttons clicked by the
+ * human player. One event per line:
+ * <pre>
+ *   name Daniel
+ *   shuffle -4965624913718295232
+ *   deal
+ *   bet+
+ *   bet-
+ *   hit
+ *   double
+ *   stand
+ * </pre>
+ * 'deal' is written for every hand, also the ones played only by computer players.
+ * The log is written on a background thread by a HandHistory without rotation:
+ * a replay needs the name and every seed from the start of the session, so the
+ * log cannot be split into files that are compressed or deleted. Instead it
+ * stops at MAX_BYTES, which is millions of hands even in TURBO games played
+ * only by computer players, and a replay plays the session up to that point.
+ * Events are added from the event dispatch thread, which never waits for the
+ * disk: when the queue is full the event is dropped, and as a replay cannot
+ * skip an event, the log stops there too. The thread playing TURBO games
+ * without human player puts its events instead, and waits for the disk.
+ *
+ */
+public class SessionLog {
+	public static final String NAME = "name";
+	public static final String SHUFFLE = "shuffle";
+	public static final String DEAL = "deal";
+	public static final String BET_UP = "bet+";
+	public static final String BET_DOWN = "bet-";
+	public static final String HIT = "hit";
+	public static final String DOUBLE = "double";
+	public static final String STAND = "stand";
+
+	private static final String NEW_LINE = System.getProperty("line.separator");
+	private static final int QUEUE = 256;		// events waiting to be written
+	private static final long FLUSH = 1000;		// ms between flushes
+	static final long MAX_BYTES = 64L << 20;	// size of the log when it stops
+
+	private HandHistory out;
+	private AtomicLong bytes = new AtomicLong();
+	private volatile boolean stopped;		// an event was dropped
+
+	/**
+	 * Starts a new log, replacing an old file with the same name.
+	 * @param file			log file
+	 * @param playerName	name entered by the user
+	 * @throws IOException when the file cannot be created
+	 */
+	public SessionLog(File file, String playerName) throws IOException {
+		out = new HandHistory(file, QUEUE, FLUSH, Long.MAX_VALUE, Long.MAX_VALUE);
+		add(NAME + " " + playerName);
+	}
+
+	/**
+	 * Adds an event to the log, unless the log has reached MAX_BYTES or has
+	 * stopped. Never waits.
+	 * @param event		one of the event names, followed by its argument if it has one
+	 */
+	public void add(String event) {
+		add(event, false);
+	}
+
+	/**
+	 * Adds an event like add, but waits while the queue is full. For threads
+	 * that may wait and add events faster than they are written.
+	 * @param event		one of the event names, followed by its argument if it has one
+	 */
+	public void put(String event) {
+		add(event, true);
+	}
+
+	/**
+	 * @param event		event to add
+	 * @param wait		true to wait for room in the queue, false to drop the event
+	 */
+	private void add(String event, boolean wait) {
+		if (stopped)
+			return;
+		String line = event + NEW_LINE;
+		long size = bytes.addAndGet(line.length());
+		if (size > MAX_BYTES) {
+			if (size - line.length() <= MAX_BYTES)
+				System.err.println("Error: Session log is full, the rest of the session is not logged");
+			return;
+		}
+		if ( !(wait ? out.add(line) : out.tryAdd(line))) {
+			stopped = true;
+			System.err.println("Error: Session log dropped an event, the rest of the session is not logged");
+		}
+	}
+
+	/**
+	 * Adds the seed of a new shoe to the log.
+	 * @param seed		seed the shoe was shuffled with
+	 */
+	public void shuffled(long seed) {
+		add(SHUFFLE + " " + seed);
+	}
+
+	/**
+	 * Writes the events added so far and closes the file.
+	 */
+	public void close() {
+		out.close();
+	}
+
+	/**
+	 * Reads all events of a log.
+	 * @param file		log file
+	 * @return			events in the order they were added, one per line
+	 * @throws IOException when the file cannot be read
+	 */
+	public static List<String> read(File file) throws IOException {
+		List<String> events = new ArrayList<String>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = reader.readLine()) != null)
+				if (!line.isEmpty())
+					events.add(line);
+		}
+		return events;
+	}
+
+}
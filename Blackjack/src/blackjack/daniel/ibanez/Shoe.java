@@ -0,0 +1,226 @@
+package blackjack.daniel.ibanez;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Dealing shoe holding one or more standard French decks. The shoe holds card
+ * ids, cards are dealt by moving a cursor over the shuffled ids, and the shoe
+ * is only shuffled again once the cut card has come out.
+ *
+ * If the shoe runs out of cards in the middle of a hand, only the discards, the
+ * cards dealt before the hand started, are shuffled again: the cards still on
+ * the table stay out of the shoe. Players tell the shoe when a hand starts with
+ * startHand.
+ *
+ * Listeners are told of every card as it leaves the shoe, except the dealer's
+ * hidden card, which is dealt with getHiddenCard and only told of once it is
+ * turned over with reveal.
+ *
+ */
+public class Shoe {
+	public static final int MAX_DECKS = 8;
+
+	private byte[] cards;
+	private int next;
+	private int handStart;		// first card dealt in this hand
+	private int hidden = -1;	// card dealt face down and not revealed yet, -1 if none
+	private int cutCard;
+	private SplittableRandom random;
+	private ShoeListener[] listeners;
+
+	/**
+	 * @param decks			number of decks, between 1 and 8
+	 * @param penetration	part of the shoe dealt before the cut card comes out, between 0 and 1.
+	 * 						With 0 the shoe is shuffled before every hand
+	 * @param random		random generator used to shuffle the cards
+	 * @throws IllegalArgumentException when decks or penetration are out of range
+	 */
+	public Shoe(int decks, double penetration, SplittableRandom random) throws IllegalArgumentException {
+		if (decks < 1 || decks > MAX_DECKS || penetration < 0 || penetration > 1)
+			throw new IllegalArgumentException();
+
+		cards = new byte[decks * Card.COUNT];
+		for (int i = 0; i < cards.length; ++i)
+			cards[i] = (byte) (i % Card.COUNT);
+
+		cutCard = (int) (penetration * cards.length);
+		this.random = random;
+		listeners = new ShoeListener[0];
+		next = cards.length;	// empty until shuffled
+		handStart = next;
+	}
+
+	/**
+	 * Puts all cards back in the shoe and shuffles them.
+	 */
+	public void shuffle() {
+		shuffle(0);
+		next = 0;
+		handStart = 0;
+		hidden = -1;
+		for (ShoeListener listener : listeners)
+			listener.shuffled();
+	}
+
+	/**
+	 * Shuffles the cards from the given position to the end of the shoe.
+	 * @param from		position of the first card shuffled
+	 */
+	private void shuffle(int from) {
+		for (int i = cards.length - 1; i > from; --i) {
+			int j = from + random.nextInt(i - from + 1);
+			byte id = cards[i];
+			cards[i] = cards[j];
+			cards[j] = id;
+		}
+	}
+
+	/**
+	 * Shuffles the discards back into an empty shoe in the middle of a hand.
+	 * The cards of the hand are moved to the front of the shoe, as if they had
+	 * been dealt after the shuffle, so listeners are told of the shuffle and
+	 * then of every card of the hand again, except a hidden card.
+	 * @throws IllegalStateException when the hand has taken every card of the shoe
+	 */
+	private void shuffleDiscards() throws IllegalStateException {
+		if (handStart == 0)
+			throw new IllegalStateException("No discards left to shuffle");
+
+		int inPlay = cards.length - handStart;
+		byte[] hand = Arrays.copyOfRange(cards, handStart, cards.length);
+		System.arraycopy(cards, 0, cards, inPlay, handStart);
+		System.arraycopy(hand, 0, cards, 0, inPlay);
+		shuffle(inPlay);
+		next = inPlay;
+		if (hidden >= 0)
+			hidden -= handStart;
+		handStart = 0;
+		for (ShoeListener listener : listeners) {
+			listener.shuffled();
+			for (int i = 0; i < inPlay; ++i)
+				if (i != hidden)
+					listener.cardDealt(cards[i]);
+		}
+	}
+
+	/**
+	 * Starts a new hand: the cards dealt from now on are on the table until
+	 * the next hand starts. A hidden card of the last hand is revealed.
+	 */
+	public void startHand() {
+		reveal();
+		handStart = next;
+	}
+
+	/**
+	 * Puts all cards back in the shoe and shuffles them with a new random generator
+	 * started from the given seed. Shuffles in the middle of a hand go on with the
+	 * same generator, so the cards dealt until the next call depend on the seed only.
+	 * @param seed		seed of the random generator
+	 */
+	public void shuffle(long seed) {
+		random = new SplittableRandom(seed);
+		shuffle();
+	}
+
+	/**
+	 * Returns the next card in the shoe. If the shoe runs out of cards in the
+	 * middle of a hand, the discards are shuffled again.
+	 * @return	next card
+	 * @throws IllegalStateException when the hand has taken every card of the shoe
+	 */
+	public Card getNextCard() {
+		return Card.get(getNextCardId());
+	}
+
+	/**
+	 * Returns the id of the next card in the shoe. If the shoe runs out of
+	 * cards in the middle of a hand, the discards are shuffled again.
+	 * @return	card id
+	 * @throws IllegalStateException when the hand has taken every card of the shoe
+	 */
+	public int getNextCardId() {
+		int id = take();
+		for (ShoeListener listener : listeners)
+			listener.cardDealt(id);
+		return id;
+	}
+
+	/**
+	 * Deals the next card face down: listeners are told of it when it is
+	 * revealed. Only one card is hidden at a time.
+	 * @return	next card
+	 * @throws IllegalStateException when the hand has taken every card of the shoe
+	 */
+	public Card getHiddenCard() {
+		reveal();
+		int id = take();
+		hidden = next - 1;
+		return Card.get(id);
+	}
+
+	/**
+	 * Turns over the hidden card, if any, and tells the listeners of it.
+	 */
+	public void reveal() {
+		if (hidden < 0)
+			return;
+		int id = cards[hidden];
+		hidden = -1;
+		for (ShoeListener listener : listeners)
+			listener.cardDealt(id);
+	}
+
+	/**
+	 * Takes the next card out of the shoe, shuffling the discards if it is empty.
+	 * @return	card id
+	 */
+	private int take() {
+		if (next == cards.length)
+			shuffleDiscards();
+		return cards[next++];
+	}
+
+	/**
+	 * Adds a listener that receives every card dealt from the shoe.
+	 * @param listener	listener to add
+	 */
+	public void addListener(ShoeListener listener) {
+		listeners = Arrays.copyOf(listeners, listeners.length + 1);
+		listeners[listeners.length - 1] = listener;
+	}
+
+	/**
+	 * Checks whether the cut card has come out, so the shoe must be shuffled
+	 * before the next hand.
+	 * @return	true if the shoe must be shuffled, false otherwise
+	 */
+	public boolean needsShuffle() {
+		return next >= cutCard;
+	}
+
+	/**
+	 * @return	number of decks in the shoe
+	 */
+	public int getDecks() {
+		return cards.length / Card.COUNT;
+	}
+
+	/**
+	 * @return	number of cards not dealt yet
+	 */
+	public int cardsLeft() {
+		return cards.length - next;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = next; i < cards.length; ++i)
+			sb.append(Card.get(cards[i]).toString() + "\n");
+
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,18 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Receives every card leaving a shoe.
+ *
+ */
+public interface ShoeListener {
+	/**
+	 * Called when a card is dealt from the shoe.
+	 * @param cardId	id of the card
+	 */
+	public void cardDealt(int cardId);
+
+	/**
+	 * Called when all cards are put back in the shoe and shuffled.
+	 */
+	public void shuffled();
+}
@@ -0,0 +1,185 @@
+package blackjack.daniel.ibanez;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/**
+ * Command line entry point that plays many hands on a headless table with the
+ * same computer players as the 'ai' game and prints the results per seat.
+ * Players that run out of money buy in again with the starting balance so
+ * every seat plays all the hands.
+ *
+ * Usage: java blackjack.daniel.ibanez.Simulator [hands] [record file]
+ *
+ */
+public class Simulator {
+	static final int BALANCE = 50;	// starting balance, same as GameLogic
+	private static final int RECORD_BLOCK = 4096;				// records written at once
+	private static final long RECORD_FILE_BYTES = 1L << 30;		// size of a record file
+
+	private Table table;
+	private long hands;
+	private long[] net;
+	private long[] bustOuts;
+	private ReturnStats[] stats;
+
+	/**
+	 * @param players	computer players sitting at the table
+	 */
+	public Simulator(PlayerAI... players) {
+		this(new SplittableRandom(), players);
+	}
+
+	/**
+	 * Plays with a single deck that is shuffled before every hand.
+	 * @param random	random generator used to shuffle the cards
+	 * @param players	computer players sitting at the table
+	 */
+	public Simulator(SplittableRandom random, PlayerAI... players) {
+		this(new Shoe(1, 0, random), players);
+	}
+
+	/**
+	 * @param shoe		shoe the cards are dealt from
+	 * @param players	computer players sitting at the table
+	 */
+	public Simulator(Shoe shoe, PlayerAI... players) {
+		table = new Table(shoe, players);
+		net = new long[players.length];
+		bustOuts = new long[players.length];
+		stats = new ReturnStats[players.length];
+		for (int i = 0; i < players.length; ++i)
+			stats[i] = new ReturnStats();
+	}
+
+	/**
+	 * Plays the given number of hands.
+	 * @param hands		number of hands to play
+	 */
+	public void run(long hands) {
+		for (long n = 0; n < hands; ++n) {
+			table.playHand();
+			this.hands++;
+			for (int i = 0; i < table.getSeats(); ++i) {
+				int result = table.getNetResult(i);
+				net[i] += result;
+				stats[i].add(result, table.getWinner(i));
+
+				Player player = table.getPlayer(i);
+				if (player.getStatus() == Status.DEAD) {
+					// buy in again
+					bustOuts[i]++;
+					player.setBalance(BALANCE);
+					player.setStatus(Status.ALIVE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the results of another simulation with the same seats to this one.
+	 * @param other		simulation to add
+	 */
+	public void merge(Simulator other) {
+		hands += other.hands;
+		for (int i = 0; i < net.length; ++i) {
+			net[i] += other.net[i];
+			bustOuts[i] += other.bustOuts[i];
+			stats[i].merge(other.stats[i]);
+		}
+	}
+
+	/**
+	 * @return	number of hands played
+	 */
+	public long getHands() {
+		return hands;
+	}
+
+	/**
+	 * @param seat	seat at the table
+	 * @return		money won (positive) or lost (negative) at the seat
+	 */
+	public long getNet(int seat) {
+		return net[seat];
+	}
+
+	/**
+	 * @param seat	seat at the table
+	 * @return		statistics of the money won per hand at the seat
+	 */
+	public ReturnStats getStats(int seat) {
+		return stats[seat];
+	}
+
+	/**
+	 * @return	widest 95% confidence interval of the EV of any seat
+	 */
+	public double getWidth() {
+		double width = 0;
+		for (ReturnStats seat : stats)
+			width = Math.max(width, seat.getWidth());
+		return width;
+	}
+
+	/**
+	 * @return	table the hands are played on
+	 */
+	public Table getTable() {
+		return table;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < table.getSeats(); ++i) {
+			sb.append(String.format("Player: %-10s Hands: %-10d Net: %-10d EV/hand: %-9.4f "
+					+ "+/- %-8.4f SD: %-8.4f Wins: %-10d Pushes: %-10d Losses: %-10d BustOuts: %d%n",
+					table.getPlayer(i).getName(), hands, net[i], hands > 0 ? (double) net[i] / hands : 0,
+					ReturnStats.Z * stats[i].getStandardError(), stats[i].getStandardDeviation(),
+					stats[i].getCount(Winner.PLAYER), stats[i].getCount(Winner.PUSH),
+					stats[i].getCount(Winner.DEALER), bustOuts[i]));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Computer players of the 'ai' game: Player, Hal and Bishop. Their playing
+	 * strategies are compiled into tables.
+	 * @return	computer players
+	 */
+	static PlayerAI[] aiSeats() {
+		return new PlayerAI[] {
+				new PlayerAI("Player", BALANCE, StrategyTable.compile(new BasicStrategy())),
+				new PlayerAI("Hal", BALANCE, StrategyTable.compile(new AdvancedStrategy())),
+				new PlayerAI("Bishop", BALANCE, StrategyTable.compile(new AdvancedStrategy())) };
+	}
+
+	/**
+	 * Main method
+	 * @param args	number of hands to play (default 1000000), file the hands are
+	 * 				written to as HandRecords (default none)
+	 * @throws IOException when the record file cannot be created
+	 */
+	public static void main(String[] args) throws IOException {
+		long hands = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+		Simulator simulator = new Simulator(aiSeats());
+		HandRecordWriter records = null;
+		if (args.length > 1) {
+			records = new HandRecordWriter(new File(args[1]), RECORD_BLOCK, RECORD_FILE_BYTES);
+			simulator.table.setRecords(records);
+		}
+
+		long start = System.nanoTime();
+		simulator.run(hands);
+		if (records != null)
+			records.close();
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.print(simulator);
+		System.out.println(String.format("%d hands in %.2f s (%.0f hands/s)",
+				hands, seconds, hands / seconds));
+	}
+
+}
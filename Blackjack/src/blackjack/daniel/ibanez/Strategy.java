@@ -108,5 +108,36 @@ class AdvancedStrategy implements Strategy {
 
 }
 
+/**
+ * 	Class that implements a simple strategy that only looks at the player's hand.
+ *
+ */
+class ThresholdStrategy implements Strategy {
+	private int threshold;
+	
+	/**
+	 * @param threshold		lowest hand value the player stands on
+	 */
+	public ThresholdStrategy(int threshold) {
+		this.threshold = threshold;
+	}
+	
+	/**
+	 * 	Bet is always 10.
+	 */
+	@Override
+	public int bettingStrategy(int balance) {
+		return 10;
+	}
 
-		
\ No newline at end of file
+	/**
+	 * 	Player stands when hand value reaches the threshold.
+	 */
+	@Override
+	public Strat playingStrategy(int dealer, Hand playerHand) {
+		if (playerHand.getValue() >= threshold)
+			return Strat.S;
+		else 
+			return Strat.H;
+	}
+}
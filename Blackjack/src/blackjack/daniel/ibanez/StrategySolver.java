@@ -0,0 +1,245 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Builds the playing strategy with the highest expected return for a set of
+ * rules and number of decks. For every dealer's card, the expected return of
+ * standing, hitting and doubling is computed for every hard and soft total,
+ * from the highest totals down, so each total only needs the totals it can
+ * reach with one more card.
+ *
+ * Decisions depend on the total of the hand and the dealer's card, like
+ * AdvancedStrategy. The chances of drawing each card are taken from the full
+ * shoe without the dealer's card, and the hand is played for one seat.
+ *
+ * Usage: java blackjack.daniel.ibanez.StrategySolver [decks (0 for infinite)] [S17|H17] [blackjack pays]
+ *
+ */
+public class StrategySolver {
+	private static final int MAX_VALUE = 21;
+
+	private Rules rules;
+	private int decks;
+
+	/**
+	 * @param rules		table rules
+	 * @param decks		number of decks in the shoe, 0 for an infinite deck
+	 */
+	public StrategySolver(Rules rules, int decks) {
+		this.rules = rules;
+		this.decks = decks;
+	}
+
+	/**
+	 * Computes the best decision for every hand total and dealer's card.
+	 * @return	strategy making those decisions, betting 10 every hand like BasicStrategy
+	 */
+	public SolvedStrategy solve() {
+		Strat[][] hard = new Strat[MAX_VALUE + 1][12];
+		Strat[][] soft = new Strat[MAX_VALUE + 1][12];
+		DealerOdds dealerOdds = new DealerOdds(rules, 1);
+
+		for (int up = 1; up <= 10; ++up) {
+			int[] counts = ExpectedValue.shoeCounts(Math.max(decks, 1));
+			double[] dealer;
+			if (decks == 0)
+				dealer = dealerOdds.outcomes(up);
+			else {
+				counts[up]--;
+				dealer = dealerOdds.outcomes(up, counts);
+			}
+			int total = 0;
+			for (int rank = 1; rank <= 10; ++rank)
+				total += counts[rank];
+			double[] p = new double[11];
+			for (int rank = 1; rank <= 10; ++rank)
+				p[rank] = (double) counts[rank] / total;
+
+			new Solution(p, dealer).fill(hard, soft, up == 1 ? 11 : up);
+		}
+		return new SolvedStrategy(hard, soft);
+	}
+
+	/**
+	 * Expected returns for one dealer's card.
+	 *
+	 */
+	private class Solution {
+		private double[] p;				// chance of drawing each rank
+		private double[] dealer;		// dealer's final hand distribution
+		private double[] hardBest = new double[MAX_VALUE + 1];	// best of hit and stand
+		private double[] softBest = new double[MAX_VALUE + 1];
+		private double[] hardHit = new double[MAX_VALUE + 1];
+		private double[] softHit = new double[MAX_VALUE + 1];
+
+		Solution(double[] p, double[] dealer) {
+			this.p = p;
+			this.dealer = dealer;
+		}
+
+		/**
+		 * Solves all totals and writes the decisions for the dealer's card.
+		 */
+		void fill(Strat[][] hard, Strat[][] soft, int dealerValue) {
+			// hard totals can only reach hard totals, soft totals reach soft and hard 12 or more,
+			// and hard totals up to 10 reach soft totals with an Ace
+			for (int value = MAX_VALUE; value >= 11; --value)
+				solveHard(value);
+			for (int value = MAX_VALUE; value >= 12; --value)
+				solveSoft(value);
+			for (int value = 10; value >= 4; --value)
+				solveHard(value);
+
+			for (int value = 4; value <= MAX_VALUE; ++value)
+				hard[value][dealerValue] = decision(stand(value), hardHit[value], doubleHard(value));
+			for (int value = 12; value <= MAX_VALUE; ++value)
+				soft[value][dealerValue] = decision(stand(value), softHit[value], doubleSoft(value));
+		}
+
+		private void solveHard(int value) {
+			double hit = 0;
+			for (int rank = 1; rank <= 10; ++rank) {
+				int next = value + rank;
+				if (rank == 1 && value + 11 <= MAX_VALUE)
+					hit += p[rank] * afterHit(softBest, value + 11);
+				else
+					hit += p[rank] * afterHit(hardBest, next);
+			}
+			hardHit[value] = hit;
+			hardBest[value] = Math.max(hit, stand(value));
+		}
+
+		private void solveSoft(int value) {
+			double hit = 0;
+			for (int rank = 1; rank <= 10; ++rank) {
+				int next = value + rank;
+				if (next <= MAX_VALUE)
+					hit += p[rank] * afterHit(softBest, next);
+				else
+					hit += p[rank] * afterHit(hardBest, next - 10);
+			}
+			softHit[value] = hit;
+			softBest[value] = Math.max(hit, stand(value));
+		}
+
+		/**
+		 * Expected return of a hand reached by hitting. A hand worth 21 stands.
+		 */
+		private double afterHit(double[] best, int value) {
+			if (value > MAX_VALUE)
+				return -1;
+			if (value == MAX_VALUE)
+				return stand(MAX_VALUE);
+			return best[value];
+		}
+
+		private double doubleHard(int value) {
+			double ev = 0;
+			for (int rank = 1; rank <= 10; ++rank) {
+				int next = value + rank;
+				if (rank == 1 && value + 11 <= MAX_VALUE)
+					next = value + 11;
+				ev += p[rank] * (next > MAX_VALUE ? -1 : stand(next));
+			}
+			return 2 * ev;
+		}
+
+		private double doubleSoft(int value) {
+			double ev = 0;
+			for (int rank = 1; rank <= 10; ++rank) {
+				int next = value + rank;
+				if (next > MAX_VALUE)
+					next -= 10;
+				ev += p[rank] * stand(next);
+			}
+			return 2 * ev;
+		}
+
+		/**
+		 * Expected return of standing, the same as in ExpectedValue.
+		 */
+		private double stand(int value) {
+			double ev = dealer[DealerOdds.BUST] - dealer[DealerOdds.BLACKJACK];
+			for (int i = 0; i < 5; ++i) {
+				if (value > 17 + i)
+					ev += dealer[i];
+				else if (value < 17 + i)
+					ev -= dealer[i];
+			}
+			return ev;
+		}
+
+		/**
+		 * Picks the decision with the highest expected return.
+		 */
+		private Strat decision(double stand, double hit, double ddown) {
+			if (rules.doubleIsAllowed() && ddown > Math.max(stand, hit))
+				return hit > stand ? Strat.Dh : Strat.Ds;
+			return hit > stand ? Strat.H : Strat.S;
+		}
+	}
+
+	/**
+	 * Strategy produced by the solver. Bets 10 every hand.
+	 *
+	 */
+	public static class SolvedStrategy implements Strategy {
+		private Strat[][] hard;
+		private Strat[][] soft;
+
+		SolvedStrategy(Strat[][] hard, Strat[][] soft) {
+			this.hard = hard;
+			this.soft = soft;
+		}
+
+		/**
+		 * 	Bet is always 10.
+		 */
+		@Override
+		public int bettingStrategy(int balance) {
+			return 10;
+		}
+
+		/**
+		 * 	Decision with the highest expected return for the total of the hand.
+		 */
+		@Override
+		public Strat playingStrategy(int dealer, Hand playerHand) {
+			int value = playerHand.getValue();
+			if (value > MAX_VALUE)
+				return Strat.S;
+			if (playerHand.isSoftTotal())
+				return soft[value][dealer];
+			return value < 4 ? Strat.H : hard[value][dealer];
+		}
+	}
+
+	/**
+	 * Prints the solved strategy and compares it with AdvancedStrategy.
+	 */
+	public static void main(String[] args) {
+		int decks = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		boolean hitSoft17 = args.length > 1 && args[1].equalsIgnoreCase("H17");
+		double blackjackPays = args.length > 2 ? Double.parseDouble(args[2]) : Rules.GAME.getBlackjackPays();
+		Rules rules = new Rules(hitSoft17, blackjackPays, true);
+
+		long start = System.nanoTime();
+		Strategy solved = new StrategySolver(rules, decks).solve();
+		long millis = (System.nanoTime() - start) / 1000000;
+
+		StrategyTable table = StrategyTable.compile(solved);
+		System.out.println(String.format("Solved strategy, %s, %s (%d ms)",
+				decks == 0 ? "infinite deck" : decks + " decks", rules, millis));
+		System.out.println(table);
+		System.out.println("Solved strategy vs AdvancedStrategy");
+		System.out.println(table.diff(StrategyTable.compile(new AdvancedStrategy())));
+
+		DealerOdds dealerOdds = new DealerOdds(rules, 100000);
+		double[] ev = new double[2];
+		Strategy[] strategies = { solved, new AdvancedStrategy() };
+		for (int i = 0; i < strategies.length; ++i)
+			ev[i] = decks == 0 ? ExpectedValue.infiniteDeck(strategies[i], dealerOdds) :
+				ExpectedValue.composition(strategies[i], ExpectedValue.shoeCounts(decks), dealerOdds);
+		System.out.println(String.format("Expected return: solved %.5f, AdvancedStrategy %.5f", ev[0], ev[1]));
+	}
+
+}
@@ -0,0 +1,188 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Playing strategy compiled into a table. The table is filled by asking a
+ * strategy once for every hand key (see Hand.getKey) and dealer card, and then
+ * answers every decision with a single array access. Betting is left to the
+ * compiled strategy.
+ *
+ * A strategy can only be compiled when its playing decisions depend on nothing
+ * else than the value of the hand, whether it holds an Ace (counted as 1 or as
+ * 11) and the dealer's card, which is the case for BasicStrategy and
+ * AdvancedStrategy.
+ *
+ */
+public class StrategyTable implements Strategy {
+	private static final int DEALER_CARDS = 12;	// dealer's card value 2 - 11 (Ace)
+	private static final int MAX_VALUE = 21;
+
+	private Strategy strategy;
+	private Strat[] table;
+
+	private StrategyTable(Strategy strategy) {
+		this.strategy = strategy;
+		table = new Strat[Hand.KEYS * DEALER_CARDS];
+	}
+
+	/**
+	 * Compiles the playing strategy of the given strategy into a table.
+	 * @param strategy	strategy to compile
+	 * @return			table with the decisions of the strategy
+	 */
+	public static StrategyTable compile(Strategy strategy) {
+		StrategyTable compiled = new StrategyTable(strategy);
+		for (int value = 4; value <= MAX_VALUE; ++value)
+			compiled.probe(hardHand(value, false));
+		for (int value = 12; value <= MAX_VALUE; ++value) {
+			compiled.probe(softHand(value));
+			compiled.probe(hardHand(value, true));
+		}
+		return compiled;
+	}
+
+	/**
+	 * Asks the strategy for a hand against every dealer card.
+	 * @param hand	hand to probe
+	 */
+	private void probe(Hand hand) {
+		for (int dealer = 2; dealer < DEALER_CARDS; ++dealer)
+			table[hand.getKey() * DEALER_CARDS + dealer] = strategy.playingStrategy(dealer, hand);
+	}
+
+	/**
+	 * Builds a hand where every Ace is counted as 1.
+	 * @param value		value of the hand
+	 * @param withAce	true if the hand must contain an Ace
+	 * @return			Hand object
+	 */
+	private static Hand hardHand(int value, boolean withAce) {
+		Hand hand = new Hand();
+		if (withAce) {
+			hand.addCard(Card.get(Suits.SPADES, 1));
+			value -= 1;
+		}
+		addCards(hand, value);
+		return hand;
+	}
+
+	/**
+	 * Builds a hand with an Ace counted as 11.
+	 * @param value		value of the hand, between 12 and 21
+	 * @return			Hand object
+	 */
+	private static Hand softHand(int value) {
+		Hand hand = new Hand();
+		hand.addCard(Card.get(Suits.SPADES, 1));
+		if (value == 12)
+			hand.addCard(Card.get(Suits.HEARTS, 1));
+		else
+			addCards(hand, value - 11);
+		return hand;
+	}
+
+	/**
+	 * Adds cards other than Aces to a hand, at least two if possible.
+	 * @param hand	hand receiving the cards
+	 * @param sum	sum of the values of the cards, at least 2
+	 */
+	private static void addCards(Hand hand, int sum) {
+		while (sum > 10) {
+			int value = sum == 11 ? 9 : 10;
+			hand.addCard(Card.get(Suits.CLUBS, value));
+			sum -= value;
+		}
+		if (hand.getSize() == 0 && sum > 3) {
+			hand.addCard(Card.get(Suits.CLUBS, 2));
+			sum -= 2;
+		}
+		hand.addCard(Card.get(Suits.DIAMONDS, sum));
+	}
+
+	/**
+	 * Same as the compiled strategy.
+	 */
+	@Override
+	public int bettingStrategy(int totalBalance) {
+		return strategy.bettingStrategy(totalBalance);
+	}
+
+	/**
+	 * Looks up the decision of the compiled strategy. Hands that were not
+	 * probed are passed on to the compiled strategy.
+	 */
+	@Override
+	public Strat playingStrategy(int dealer, Hand playerHand) {
+		Strat strat = table[playerHand.getKey() * DEALER_CARDS + dealer];
+		if (strat == null)
+			strat = strategy.playingStrategy(dealer, playerHand);
+		return strat;
+	}
+
+	/**
+	 * @return	compiled strategy
+	 */
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Lists the decisions where two tables do not agree.
+	 * @param other		table to compare with
+	 * @return			one line per decision, empty if both tables agree
+	 */
+	public String diff(StrategyTable other) {
+		StringBuilder sb = new StringBuilder();
+		for (int key = 0; key < Hand.KEYS; ++key)
+			for (int dealer = 2; dealer < DEALER_CARDS; ++dealer) {
+				Strat mine = table[key * DEALER_CARDS + dealer];
+				Strat theirs = other.table[key * DEALER_CARDS + dealer];
+				if (mine != theirs)
+					sb.append(String.format("%-12s vs %-2s: %-4s %s%n", rowName(key),
+							dealerName(dealer), mine, theirs));
+			}
+		return sb.toString();
+	}
+
+	/**
+	 * Prints the table as a chart with one row per hand and one column per dealer card.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(String.format("%-12s", ""));
+		for (int dealer = 2; dealer < DEALER_CARDS; ++dealer)
+			sb.append(String.format("%-4s", dealerName(dealer)));
+		sb.append(String.format("%n"));
+
+		for (int key = 0; key < Hand.KEYS; ++key) {
+			if (table[key * DEALER_CARDS + 2] == null)
+				continue;
+			sb.append(String.format("%-12s", rowName(key)));
+			for (int dealer = 2; dealer < DEALER_CARDS; ++dealer)
+				sb.append(String.format("%-4s", table[key * DEALER_CARDS + dealer]));
+			sb.append(String.format("%n"));
+		}
+		return sb.toString();
+	}
+
+	private static String rowName(int key) {
+		String kind = Hand.keyIsSoftTotal(key) ? "soft" : Hand.keyIsSoft(key) ? "hard A" : "hard";
+		return kind + " " + Hand.keyValue(key);
+	}
+
+	private static String dealerName(int dealer) {
+		return dealer == 11 ? "A" : dealer + "";
+	}
+
+	/**
+	 * Prints the compiled AdvancedStrategy and where BasicStrategy differs from it.
+	 */
+	public static void main(String[] args) {
+		StrategyTable advanced = compile(new AdvancedStrategy());
+		StrategyTable basic = compile(new BasicStrategy());
+		System.out.println("AdvancedStrategy");
+		System.out.println(advanced);
+		System.out.println("AdvancedStrategy vs BasicStrategy");
+		System.out.print(advanced.diff(basic));
+	}
+
+}
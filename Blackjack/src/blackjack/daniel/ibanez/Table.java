@@ -0,0 +1,666 @@
+package blackjack.daniel.ibanez;
+
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Headless blackjack table. Plays the same rounds as GameLogic (new hand, bets,
+ * deal, AI turns, dealer turn and balance update), but without GUI or animation
+ * pauses, so hands can be played as fast as the CPU allows. Hands are only
+ * written to file when a history or a record writer is set, events are only
+ * published when an EventRing is set, and hands are only counted and timed
+ * when TableMetrics are set.
+ *
+ * Computer players play whole hands with playHand. Seats with a human player
+ * play like in GameLogic: the hand is started with startHand, the human's
+ * decisions are made with hit, doubleDown and stand, and finishHand lets the
+ * computer players and the dealer play. A human always bets at least MIN_BET,
+ * which is taken from the balance as soon as the previous hand is over.
+ *
+ */
+public class Table {
+	public static final int MIN_BET = 10;	// minimum bet of a human player, same as GameLogic
+
+	private Player[] players;
+	private Dealer dealer;
+	private Shoe shoe;
+	private HandHistory history;
+	private HandRecordWriter records;
+	private LongSupplier seeds;
+	private EventRing events;
+	private TableMetrics metrics;
+	private boolean timed;			// phases of this hand are timed
+	private long lap;				// ns when the last phase ended
+	private int decisions;			// decisions taken in this hand
+	private boolean revealed;		// dealer has turned over his hidden card
+	private Object round;			// flight recorder event of this hand, null when not recorded
+	private long allocated;			// bytes allocated by the thread when the hand (re)started
+	private long roundBytes;		// bytes allocated by the hand before the human players played
+	private Winner[] winners;
+	private Action[] lastActions;
+	private int[] lastBets;
+	private int[] startBalance;
+	private long handsPlayed;
+
+	/**
+	 * @param players	players sitting at the table, seat 0 first
+	 */
+	public Table(Player... players) {
+		this(new SplittableRandom(), players);
+	}
+
+	/**
+	 * Plays with a single deck that is shuffled before every hand.
+	 * @param random	random generator used to shuffle the cards
+	 * @param players	players sitting at the table, seat 0 first
+	 */
+	public Table(SplittableRandom random, Player... players) {
+		this(new Shoe(1, 0, random), players);
+	}
+
+	/**
+	 * Players with a CountingStrategy get a counter following the shoe.
+	 * @param shoe		shoe the cards are dealt from
+	 * @param players	players sitting at the table, seat 0 first
+	 */
+	public Table(Shoe shoe, Player... players) {
+		this.shoe = shoe;
+		this.players = players;
+		dealer = new Dealer();
+		winners = new Winner[players.length];
+		lastActions = new Action[players.length];
+		lastBets = new int[players.length];
+		startBalance = new int[players.length];
+
+		for (Player player : players)
+			if (player instanceof PlayerAI &&
+					((PlayerAI)player).getStrategy() instanceof CountingStrategy) {
+				TagSystem system = ((CountingStrategy)((PlayerAI)player).getStrategy()).getTagSystem();
+				Counter counter = new Counter(system, shoe.getDecks());
+				shoe.addListener(counter);
+				((PlayerAI)player).setCounter(counter);
+			}
+	}
+
+	/**
+	 * Plays one complete hand for all players that are not dead.
+	 * @return	true if a hand was played,
+	 * 			false if all players are dead
+	 */
+	public boolean playHand() {
+		if (!startHand())
+			return false;
+
+		finishHand();
+		return true;
+	}
+
+	/**
+	 * Starts a new hand: bets are placed and the first two cards are dealt.
+	 * Human players with 21 have blackjack, the others are left ALIVE to decide.
+	 * @return	true if a hand was started,
+	 * 			false if all players are dead
+	 */
+	public boolean startHand() {
+		if (allAreDead())
+			return false;
+
+		timed = metrics != null && metrics.isSampled(handsPlayed);
+		if (timed)
+			lap = System.nanoTime();
+		round = FlightRecorder.RECORDER.beginRound();
+		if (round != null)
+			allocated = FlightRecorder.RECORDER.allocatedBytes();
+		newHand();
+		if (events != null)
+			events.handStart(handsPlayed + 1);
+		placeBets();
+		lap(Phase.BETS);
+		dealCards();
+		lap(Phase.DEAL);
+		for (int i = 0; i < players.length; ++i)
+			if ( !(players[i] instanceof PlayerAI) && players[i].getStatus() == Status.ALIVE &&
+					players[i].getHandValue() == 21)
+				setStatus(i, Status.BLACKJACK);
+		if (round != null)
+			roundBytes = FlightRecorder.RECORDER.allocatedBytes() - allocated;
+		return true;
+	}
+
+	/**
+	 * Finishes a hand started with startHand once the human players have played.
+	 */
+	public void finishHand() {
+		if (timed)
+			lap = System.nanoTime();	// the time human players take is not timed
+		if (round != null)
+			allocated = FlightRecorder.RECORDER.allocatedBytes();
+		aiPlayersTurn();
+		lap(Phase.AI_TURNS);
+		dealerTurn();
+		lap(Phase.DEALER_TURN);
+		calculateBalanceForAllPlayers();
+		handsPlayed++;
+		if (records != null)
+			records.write(this);
+		lap(Phase.HISTORY);
+		if (metrics != null)
+			metrics.handPlayed(decisions);
+		if (events != null)
+			events.handEnd(handsPlayed);
+		if (round != null)
+			commitRound();
+	}
+
+	/**
+	 * Records the hand in the flight recorder. The time between startHand and
+	 * finishHand is part of the duration, but the bytes allocated meanwhile by
+	 * other work on the thread are not counted.
+	 */
+	private void commitRound() {
+		FlightRecorder.RECORDER.commitRound(round, handsPlayed, players.length, dealer.getHand().getSize(),
+				roundBytes + FlightRecorder.RECORDER.allocatedBytes() - allocated);
+		round = null;
+	}
+
+	/**
+	 * Resets hands for dealer and players.
+	 */
+	private void newHand() {
+		for (int i = 0; i < players.length; ++i) {
+			players[i].setDoubleAllowed(true);
+			players[i].clearHand();
+			if (players[i].getStatus() != Status.DEAD)
+				players[i].setStatus(Status.ALIVE);
+			winners[i] = null;
+			lastActions[i] = null;
+			startBalance[i] = players[i].getBalance() + players[i].getBet();
+		}
+		dealer.clearHand();
+		decisions = 0;
+	}
+
+	/**
+	 * Sets bets for all AI players according to their betting strategies.
+	 */
+	private void placeBets() {
+		for (int i = 0; i < players.length; ++i) {
+			if (players[i].getStatus() != Status.DEAD && players[i] instanceof PlayerAI) {
+				int bet = ((PlayerAI)players[i]).getBettingStrategy();
+				players[i].setBalance(players[i].getBalance() - bet);
+				players[i].setBet(bet);
+			}
+		}
+	}
+
+	/**
+	 * Shuffles the shoe if the cut card has come out and deals the first two
+	 * cards to all players and dealer.
+	 */
+	private void dealCards() {
+		if (shoe.needsShuffle()) {
+			Object shuffle = FlightRecorder.RECORDER.beginShuffle();
+			int cardsLeft = shoe.cardsLeft();
+			if (seeds != null)
+				shoe.shuffle(seeds.getAsLong());
+			else
+				shoe.shuffle();
+			if (shuffle != null)
+				FlightRecorder.RECORDER.commitShuffle(shuffle, handsPlayed + 1, shoe.getDecks(), cardsLeft);
+			if (events != null)
+				events.shuffle(handsPlayed + 1);
+		}
+		shoe.startHand();
+		revealed = false;
+		for (int ncard = 0; ncard < 2; ++ncard) {
+			for (int i = 0; i < players.length; ++i)
+				if (players[i].getStatus() == Status.ALIVE)
+					draw(i);
+			if (ncard == 0)
+				dealer.addCard(hiddenCard());	// dealer hides his first card
+			else
+				draw(GameEvent.DEALER);
+		}
+	}
+
+	/**
+	 * Computer players double, hit or stand according to their strategies.
+	 */
+	private void aiPlayersTurn() {
+		for (int i = 0; i < players.length; ++i) {
+			if ( !(players[i] instanceof PlayerAI) || players[i].getStatus() == Status.DEAD)
+				continue;
+
+			if (players[i].getHandValue() == 21)
+				setStatus(i, Status.BLACKJACK);
+
+			while (players[i].getStatus() == Status.ALIVE) {
+				Strat strat = decide(i);
+
+				switch (strat) {
+					case S:
+						setStatus(i, Status.STAND);
+						setAction(i, Action.STAND);
+						break;
+					case H:
+						hit(i);
+						break;
+					case Dh:
+						if ( !doubleDown(i))
+							hit(i);
+						break;
+					case Ds:
+						if ( !doubleDown(i)) {
+							setStatus(i, Status.STAND);
+							setAction(i, Action.STAND);
+						}
+				}
+
+				players[i].setDoubleAllowed(false);
+			}
+		}
+	}
+
+	/**
+	 * Decision of a computer player, recorded in the flight recorder when slow.
+	 * @param i		player index
+	 * @return		decision of the player's strategy
+	 */
+	private Strat decide(int i) {
+		PlayerAI player = (PlayerAI) players[i];
+		Object decision = FlightRecorder.RECORDER.beginDecision();
+		Strat strat = player.getPlayingStrategy(dealer.getHandValue(false), player.getHand());
+		if (decision != null)
+			FlightRecorder.RECORDER.commitDecision(decision, i, player.getStrategy(), strat,
+					player.getHand().getSize(), player.getHandValue(), dealer.getHandValue(false));
+		return strat;
+	}
+
+	/**
+	 * Player with index 'i' gets a new card. Doubling is not allowed after a hit.
+	 * @param i		player index
+	 */
+	public void hit(int i) {
+		setAction(i, Action.HIT);
+		players[i].setDoubleAllowed(false);
+		draw(i);
+		if (players[i].getHandValue() > 21)
+			setStatus(i, Status.BUSTED);
+		else if (players[i].getHandValue() == 21)
+			setStatus(i, Status.STAND);
+	}
+
+	/**
+	 * Player with index 'i' doubles his bet and gets one last card.
+	 * @param i		player index
+	 * @return		true if player could double down, false otherwise
+	 */
+	public boolean doubleDown(int i) {
+		if (!players[i].doubleIsAllowed() || players[i].getBalance() < players[i].getBet())
+			return false;
+
+		setAction(i, Action.DOUBLE);
+		players[i].setBalance(players[i].getBalance() - players[i].getBet());
+		players[i].setBet(players[i].getBet() * 2);
+		draw(i);
+		if (players[i].getHandValue() > 21)
+			setStatus(i, Status.BUSTED);
+		else
+			setStatus(i, Status.STAND);
+
+		return true;
+	}
+
+	/**
+	 * Records the time since the last phase ended, if the hand is timed.
+	 * @param phase		phase that has ended
+	 */
+	private void lap(Phase phase) {
+		if (!timed)
+			return;
+		long now = System.nanoTime();
+		metrics.record(phase, now - lap);
+		lap = now;
+	}
+
+	/**
+	 * Deals the next card of the shoe.
+	 * @param i		player index or GameEvent.DEALER
+	 */
+	private void draw(int i) {
+		if (events != null && shoe.cardsLeft() == 0)
+			publishTable();
+		Card card = shoe.getNextCard();
+		if (i == GameEvent.DEALER)
+			dealer.addCard(card);
+		else
+			players[i].addCard(card);
+		if (events != null)
+			events.card(handsPlayed + 1, i, card.getId());
+	}
+
+	/**
+	 * Deals the dealer's hidden card. Counters only see it once the shoe
+	 * reveals it.
+	 * @return	hidden card
+	 */
+	private Card hiddenCard() {
+		if (events != null && shoe.cardsLeft() == 0)
+			publishTable();
+		Card card = shoe.getHiddenCard();
+		if (events != null)
+			events.holeCard(handsPlayed + 1, card.getId());
+		return card;
+	}
+
+	/**
+	 * Publishes the shuffle of the discards when the shoe is about to run out in
+	 * the middle of a hand, followed by the cards still on the table.
+	 */
+	private void publishTable() {
+		long hand = handsPlayed + 1;
+		events.shuffle(hand);
+		for (int i = 0; i < players.length; ++i)
+			for (int c = 0; c < players[i].getHand().getSize(); ++c)
+				events.card(hand, i, players[i].getHand().getCardAt(c).getId());
+		Hand cards = dealer.getHand();
+		for (int c = 0; c < cards.getSize(); ++c)
+			if (c == 0 && !revealed)
+				events.holeCard(hand, cards.getCardAt(c).getId());
+			else
+				events.card(hand, GameEvent.DEALER, cards.getCardAt(c).getId());
+	}
+
+	/**
+	 * @param i			player index or GameEvent.DEALER
+	 * @param status	new status of the player or dealer
+	 */
+	private void setStatus(int i, Status status) {
+		if (i == GameEvent.DEALER)
+			dealer.setStatus(status);
+		else
+			players[i].setStatus(status);
+		if (events != null)
+			events.status(handsPlayed + 1, i, status);
+	}
+
+	/**
+	 * @param i			player index
+	 * @param action	decision taken by the player
+	 */
+	private void setAction(int i, Action action) {
+		lastActions[i] = action;
+		decisions++;
+		if (events != null)
+			events.action(handsPlayed + 1, i, action);
+	}
+
+	/**
+	 * Player with index 'i' stands.
+	 * @param i		player index
+	 */
+	public void stand(int i) {
+		setAction(i, Action.STAND);
+		setStatus(i, Status.STAND);
+	}
+
+	/**
+	 * Human player with index 'i' raises the bet by MIN_BET if there is money left.
+	 * @param i		player index
+	 */
+	public void betUp(int i) {
+		if (players[i].getBalance() > 0) {
+			players[i].setBet(players[i].getBet() + MIN_BET);
+			players[i].setBalance(players[i].getBalance() - MIN_BET);
+		}
+	}
+
+	/**
+	 * Human player with index 'i' lowers the bet by MIN_BET, but not below MIN_BET.
+	 * @param i		player index
+	 */
+	public void betDown(int i) {
+		if (players[i].getBet() > MIN_BET) {
+			players[i].setBet(players[i].getBet() - MIN_BET);
+			players[i].setBalance(players[i].getBalance() + MIN_BET);
+		}
+	}
+
+	/**
+	 * Dealer plays his hand when at least one player is holding a valid hand.
+	 * Dealer stands on 17 or more.
+	 */
+	private void dealerTurn() {
+		shoe.reveal();		// the hidden card is turned over
+		revealed = true;
+		if (events != null)
+			events.reveal(handsPlayed + 1, dealer.getHand().getCardAt(0).getId());
+		dealer.setStatus(Status.ALIVE);
+		boolean anyStand = false;
+		for (Player player : players)
+			if (player.getStatus() == Status.STAND)
+				anyStand = true;
+
+		if (!anyStand)
+			return;
+
+		if (dealer.getHandValue(true) == 21)
+			setStatus(GameEvent.DEALER, Status.BLACKJACK);
+		else {
+			while (dealer.getHandValue(true) < 17)
+				draw(GameEvent.DEALER);
+
+			if (dealer.getHandValue(true) > 21)
+				setStatus(GameEvent.DEALER, Status.BUSTED);
+			else
+				setStatus(GameEvent.DEALER, Status.STAND);
+		}
+	}
+
+	/**
+	 * Compares every player's hand with the dealer's hand and adjusts balances.
+	 */
+	private void calculateBalanceForAllPlayers() {
+		// the hand is written as it was before the settlement, so its text is
+		// taken first, but the time it takes is timed with the history
+		String handText = null;
+		long textNanos = 0;
+		if (history != null) {
+			long start = timed ? System.nanoTime() : 0;
+			handText = HandHistory.handText(players, dealer);
+			if (timed) {
+				textNanos = System.nanoTime() - start;
+				lap += textNanos;
+			}
+		}
+
+		for (int i = 0; i < players.length; ++i) {
+			if (players[i].getStatus() == Status.DEAD)
+				continue;
+
+			Winner winner = findWinner(players[i], dealer);
+			if (winner == Winner.DEALER) {
+				if (players[i].getBalance() == 0)
+					setStatus(i, Status.DEAD);
+			}
+			else if (winner == Winner.PLAYER)
+				players[i].setBalance(players[i].getBalance() + (players[i].getBet() * 2));
+			else
+				players[i].setBalance(players[i].getBalance() + players[i].getBet());
+
+			lastBets[i] = players[i].getBet();
+			winners[i] = winner;
+			if (events != null)
+				events.settlement(handsPlayed + 1, i, winner, lastBets[i], players[i].getBalance());
+
+			// human players still in the game bet the minimum for the next hand
+			if ( !(players[i] instanceof PlayerAI) && players[i].getStatus() != Status.DEAD) {
+				players[i].setBalance(players[i].getBalance() - MIN_BET);
+				players[i].setBet(MIN_BET);
+			}
+			else
+				players[i].setBet(0);
+		}
+
+		lap(Phase.SETTLEMENT);
+		if (history != null) {
+			lap -= textNanos;
+			history.add(handText + HandHistory.balanceText(players));
+		}
+	}
+
+	/**
+	 * Compares a player's hand with the dealer's hand once both have played.
+	 * @param player	player holding a hand
+	 * @param dealer	dealer that has finished his turn
+	 * @return			winner of the hand
+	 */
+	static Winner findWinner(Player player, Dealer dealer) {
+		if (player.getStatus() == Status.BUSTED)
+			return Winner.DEALER;
+		if (dealer.getStatus() == Status.BUSTED)
+			return Winner.PLAYER;
+
+		Winner winner = Winner.PUSH;
+		if (player.getHandValue() > dealer.getHandValue(true))
+			winner = Winner.PLAYER;
+
+		if (dealer.getHandValue(true) > player.getHandValue())
+			winner = Winner.DEALER;
+
+		if (player.getStatus() == Status.BLACKJACK &&
+				dealer.getStatus() != Status.BLACKJACK)
+			winner = Winner.PLAYER;
+
+		if (dealer.getStatus() == Status.BLACKJACK &&
+				player.getStatus() != Status.BLACKJACK)
+			winner = Winner.DEALER;
+
+		return winner;
+	}
+
+	/**
+	 * @return	true if no player has money left
+	 */
+	public boolean allAreDead() {
+		for (Player player : players)
+			if (player.getStatus() != Status.DEAD)
+				return false;
+		return true;
+	}
+
+	/**
+	 * @param i		player index
+	 * @return		winner of the last hand for the given seat,
+	 * 				null if the player did not play
+	 */
+	public Winner getWinner(int i) {
+		return winners[i];
+	}
+
+	/**
+	 * @param i		player index
+	 * @return		last decision of the player in the last hand,
+	 * 				null if the player took no decision
+	 */
+	public Action getLastAction(int i) {
+		return lastActions[i];
+	}
+
+	/**
+	 * @param i		player index
+	 * @return		money bet by the player in the last hand, doubled bets included
+	 */
+	public int getLastBet(int i) {
+		return winners[i] != null ? lastBets[i] : 0;
+	}
+
+	/**
+	 * @param i		player index
+	 * @return		money won (positive) or lost (negative) by the player in the last hand
+	 */
+	public int getNetResult(int i) {
+		return players[i].getBalance() + players[i].getBet() - startBalance[i];
+	}
+
+	/**
+	 * @param i		player index
+	 * @return		player sitting at the given seat
+	 */
+	public Player getPlayer(int i) {
+		return players[i];
+	}
+
+	/**
+	 * @return	number of seats at the table
+	 */
+	public int getSeats() {
+		return players.length;
+	}
+
+	/**
+	 * @return	dealer of the table
+	 */
+	public Dealer getDealer() {
+		return dealer;
+	}
+
+	/**
+	 * Writes every hand played to a history file. Without history
+	 * the table does no file output.
+	 * @param history	hand history, null to stop writing
+	 */
+	public void setHistory(HandHistory history) {
+		this.history = history;
+	}
+
+	/**
+	 * Writes every hand played as a binary HandRecord.
+	 * @param records	record writer, null to stop writing
+	 */
+	public void setRecords(HandRecordWriter records) {
+		this.records = records;
+	}
+
+	/**
+	 * Shuffles the shoe with seeds taken from the given source, see Shoe.shuffle(long).
+	 * @param seeds		seed of every shoe, null to shuffle with the shoe's generator
+	 */
+	public void setSeeds(LongSupplier seeds) {
+		this.seeds = seeds;
+	}
+
+	/**
+	 * Publishes cards, actions, status changes and settlements of every hand,
+	 * read for example by a Counter or an EventHistory. Publishing fills about a
+	 * dozen events per hand even when nobody reads them, so set a ring only
+	 * once a reader has subscribed; without one the table publishes nothing.
+	 * @param events	ring the events are published to, null to stop publishing
+	 */
+	public void setEvents(EventRing events) {
+		this.events = events;
+	}
+
+	/**
+	 * Counts hands and decisions and times the phases of sampled hands.
+	 * @param metrics	metrics shared with other tables, null to stop measuring
+	 */
+	public void setMetrics(TableMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return	shoe the cards are dealt from
+	 */
+	public Shoe getShoe() {
+		return shoe;
+	}
+
+	/**
+	 * @return	number of hands played since the table was created
+	 */
+	public long getHandsPlayed() {
+		return handsPlayed;
+	}
+
+}
@@ -0,0 +1,242 @@
+package blackjack.daniel.ibanez;
+
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Enumeration of the phases of a hand timed by TableMetrics, in the order
+ * they are played.
+ *
+ */
+enum Phase {
+	BETS, DEAL, AI_TURNS, DEALER_TURN, SETTLEMENT, HISTORY
+}
+
+/**
+ * Throughput and phase latencies of the tables that share it. Tables count
+ * every hand and decision, but only time the phases of one hand in SAMPLE, so
+ * the clock is read a few times every SAMPLE hands. Any number of tables on any
+ * threads may record into the same metrics.
+ *
+ * Registered as a platform MXBean, the metrics can be watched with jconsole
+ * or any other JMX client.
+ *
+ */
+public class TableMetrics implements TableMetricsMXBean {
+	static final int SAMPLE = 16;			// one hand in SAMPLE is timed, a power of two
+	private static final long RATE = 1000000000;	// ns between updates of the rates
+
+	private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+	private final LongAdder hands = new LongAdder();
+	private final LongAdder decisions = new LongAdder();
+	private long rateTime = System.nanoTime();
+	private long rateHands, rateDecisions;
+	private double handsPerSecond, decisionsPerSecond;
+
+	public TableMetrics() {
+		for (int i = 0; i < phases.length; ++i)
+			phases[i] = new LatencyHistogram();
+	}
+
+	/**
+	 * @param hand		number of the hand at its table
+	 * @return			true if the phases of the hand are timed
+	 */
+	public boolean isSampled(long hand) {
+		return (hand & (SAMPLE - 1)) == 0;
+	}
+
+	/**
+	 * @param phase		phase of a hand
+	 * @param nanos		time the phase took
+	 */
+	public void record(Phase phase, long nanos) {
+		phases[phase.ordinal()].record(nanos);
+	}
+
+	/**
+	 * Counts a hand that has been played.
+	 * @param decisions		hits, stands and doubles taken in the hand
+	 */
+	public void handPlayed(int decisions) {
+		hands.increment();
+		if (decisions > 0)
+			this.decisions.add(decisions);
+	}
+
+	/**
+	 * @param phase		phase of a hand
+	 * @return			durations of the phase
+	 */
+	public LatencyHistogram getHistogram(Phase phase) {
+		return phases[phase.ordinal()];
+	}
+
+	@Override
+	public long getHands() {
+		return hands.sum();
+	}
+
+	@Override
+	public long getDecisions() {
+		return decisions.sum();
+	}
+
+	@Override
+	public double getHandsPerSecond() {
+		updateRates();
+		return handsPerSecond;
+	}
+
+	@Override
+	public double getDecisionsPerSecond() {
+		updateRates();
+		return decisionsPerSecond;
+	}
+
+	@Override
+	public PhaseStats[] getPhases() {
+		PhaseStats[] stats = new PhaseStats[phases.length];
+		for (Phase phase : Phase.values())
+			stats[phase.ordinal()] = new PhaseStats(phase, phases[phase.ordinal()]);
+		return stats;
+	}
+
+	@Override
+	public synchronized void reset() {
+		for (LatencyHistogram histogram : phases)
+			histogram.reset();
+		hands.reset();
+		decisions.reset();
+		rateTime = System.nanoTime();
+		rateHands = rateDecisions = 0;
+		handsPerSecond = decisionsPerSecond = 0;
+	}
+
+	/**
+	 * Computes the rates again if RATE ns have passed since they were last computed.
+	 */
+	private synchronized void updateRates() {
+		long now = System.nanoTime();
+		if (now - rateTime < RATE)
+			return;
+
+		long nowHands = hands.sum(), nowDecisions = decisions.sum();
+		double seconds = (now - rateTime) / 1e9;
+		handsPerSecond = (nowHands - rateHands) / seconds;
+		decisionsPerSecond = (nowDecisions - rateDecisions) / seconds;
+		rateTime = now;
+		rateHands = nowHands;
+		rateDecisions = nowDecisions;
+	}
+
+	/**
+	 * Registers the metrics in the platform MBean server.
+	 * @param name		name of the metrics, for example the name of the server
+	 * @throws JMException when the name is taken or not valid
+	 */
+	public void register(String name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+				new ObjectName("blackjack.daniel.ibanez:type=TableMetrics,name=" + name));
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(String.format("%-12s %-10s %-10s %-10s %-10s %s%n",
+				"Phase", "Samples", "p50 us", "p99 us", "p99.9 us", "max us"));
+		for (PhaseStats stats : getPhases())
+			sb.append(String.format("%-12s %-10d %-10.2f %-10.2f %-10.2f %.2f%n", stats.getPhase(),
+					stats.getCount(), stats.getP50(), stats.getP99(), stats.getP999(), stats.getMax()));
+		return sb.toString();
+	}
+
+	/**
+	 * Plays hands on a headless table with and without metrics and prints the
+	 * phase latencies and the time taken by both.
+	 * @param args	number of hands (default 2000000)
+	 */
+	public static void main(String[] args) {
+		long hands = args.length > 0 ? Long.parseLong(args[0]) : 2000000;
+
+		Simulator plain = new Simulator(new Shoe(6, 0.75, new SplittableRandom(1)), Simulator.aiSeats());
+		long start = System.nanoTime();
+		plain.run(hands);
+		double plainSeconds = (System.nanoTime() - start) / 1e9;
+
+		TableMetrics metrics = new TableMetrics();
+		Simulator measured = new Simulator(new Shoe(6, 0.75, new SplittableRandom(1)), Simulator.aiSeats());
+		measured.getTable().setMetrics(metrics);
+		start = System.nanoTime();
+		measured.run(hands);
+		double measuredSeconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.print(metrics);
+		System.out.println(String.format("Hands: %d  Decisions: %d", metrics.getHands(), metrics.getDecisions()));
+		System.out.println(String.format("%d hands: %.2f s without metrics, %.2f s with metrics",
+				hands, plainSeconds, measuredSeconds));
+	}
+
+	/**
+	 * Latency percentiles of a phase in microseconds, read at one moment. A JMX
+	 * proxy of the metrics rebuilds it with its public constructor.
+	 */
+	public static class PhaseStats {
+		private final String phase;
+		private final long count;
+		private final double p50, p99, p999, max;
+
+		PhaseStats(Phase phase, LatencyHistogram histogram) {
+			this(phase.name(), histogram.getCount(), histogram.getPercentile(50) / 1e3,
+					histogram.getPercentile(99) / 1e3, histogram.getPercentile(99.9) / 1e3,
+					histogram.getMax() / 1e3);
+		}
+
+		/**
+		 * @param phase		name of the phase
+		 * @param count		number of times the phase was timed
+		 * @param p50		median duration (us)
+		 * @param p99		99th percentile of the durations (us)
+		 * @param p999		99.9th percentile of the durations (us)
+		 * @param max		longest duration (us)
+		 */
+		@ConstructorProperties({ "phase", "count", "p50", "p99", "p999", "max" })
+		public PhaseStats(String phase, long count, double p50, double p99, double p999, double max) {
+			this.phase = phase;
+			this.count = count;
+			this.p50 = p50;
+			this.p99 = p99;
+			this.p999 = p999;
+			this.max = max;
+		}
+
+		public String getPhase() {
+			return phase;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getP50() {
+			return p50;
+		}
+
+		public double getP99() {
+			return p99;
+		}
+
+		public double getP999() {
+			return p999;
+		}
+
+		public double getMax() {
+			return max;
+		}
+	}
+
+}
@@ -0,0 +1,38 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Management interface of TableMetrics, shown by JMX clients such as
+ * jconsole under blackjack.daniel.ibanez:type=TableMetrics.
+ *
+ */
+public interface TableMetricsMXBean {
+	/**
+	 * @return	hands played since the last reset
+	 */
+	public long getHands();
+
+	/**
+	 * @return	hits, stands and doubles since the last reset
+	 */
+	public long getDecisions();
+
+	/**
+	 * @return	hands played per second over the last second or more
+	 */
+	public double getHandsPerSecond();
+
+	/**
+	 * @return	decisions per second over the last second or more
+	 */
+	public double getDecisionsPerSecond();
+
+	/**
+	 * @return	latency percentiles of every phase of a hand
+	 */
+	public TableMetrics.PhaseStats[] getPhases();
+
+	/**
+	 * Starts counting and timing again.
+	 */
+	public void reset();
+}
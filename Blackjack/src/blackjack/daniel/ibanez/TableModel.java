@@ -0,0 +1,169 @@
+package blackjack.daniel.ibanez;
+
+import java.util.Arrays;
+
+/**
+ * What the table on screen should show: name, hand value, bet, balance and
+ * cards of every seat and the dealer. The game changes the model from any
+ * thread, and the Gui takes an immutable Snapshot on the event thread once per
+ * frame, so changes made between two frames are drawn together. Changes made
+ * while holding the model's lock are never drawn apart.
+ *
+ */
+class TableModel {
+	private final int dealer;		// index of the dealer, after the seats
+	private String[] names;
+	private int[] counts;
+	private int[] bets;
+	private int[] balances;
+	private int[][] cards;
+	private int[] sizes;
+	private int active = -1;		// seat playing, dealer or -1 for none
+	private boolean dealerHidesCard = true;
+	private long version;
+
+	/**
+	 * @param seats		number of player seats
+	 */
+	public TableModel(int seats) {
+		dealer = seats;
+		names = new String[seats + 1];
+		counts = new int[seats + 1];
+		bets = new int[seats + 1];
+		balances = new int[seats + 1];
+		cards = new int[seats + 1][12];
+		sizes = new int[seats + 1];
+		Arrays.fill(names, "");
+	}
+
+	/**
+	 * @return	index used for the dealer
+	 */
+	public int getDealer() {
+		return dealer;
+	}
+
+	/**
+	 * @param seat	seat or dealer
+	 * @param name	text of the name label
+	 */
+	public synchronized void setName(int seat, String name) {
+		names[seat] = name;
+		version++;
+	}
+
+	/**
+	 * @param seat	seat or dealer
+	 * @param count	value of the hand
+	 */
+	public synchronized void setCount(int seat, int count) {
+		counts[seat] = count;
+		version++;
+	}
+
+	/**
+	 * @param seat	seat
+	 * @param bet	amount of money to bet
+	 */
+	public synchronized void setBet(int seat, int bet) {
+		bets[seat] = bet;
+		version++;
+	}
+
+	/**
+	 * @param seat		seat
+	 * @param balance	amount of money left
+	 */
+	public synchronized void setBalance(int seat, int balance) {
+		balances[seat] = balance;
+		version++;
+	}
+
+	/**
+	 * @param seat		seat or dealer
+	 * @param image		card id, CardImages.BACK or CardImages.EMPTY
+	 */
+	public synchronized void addCard(int seat, int image) {
+		if (sizes[seat] == cards[seat].length)
+			cards[seat] = Arrays.copyOf(cards[seat], sizes[seat] * 2);
+		cards[seat][sizes[seat]++] = image;
+		version++;
+	}
+
+	/**
+	 * @param seat	seat or dealer whose cards are removed
+	 */
+	public synchronized void clearCards(int seat) {
+		sizes[seat] = 0;
+		version++;
+	}
+
+	/**
+	 * @param seat	seat or dealer that is playing
+	 */
+	public synchronized void setActive(int seat) {
+		active = seat;
+		version++;
+	}
+
+	/**
+	 * @param hide	true if the dealer's first card is on its back
+	 */
+	public synchronized void setDealerHidesCard(boolean hide) {
+		dealerHidesCard = hide;
+		version++;
+	}
+
+	/**
+	 * Copies the model if it has changed.
+	 * @param shown		version of the last snapshot shown, -1 for none
+	 * @return			snapshot of the model, null if nothing changed since shown
+	 */
+	public synchronized Snapshot snapshot(long shown) {
+		if (version == shown)
+			return null;
+
+		Seat[] seats = new Seat[names.length];
+		for (int i = 0; i < seats.length; ++i)
+			seats[i] = new Seat(names[i], counts[i], bets[i], balances[i],
+					Arrays.copyOf(cards[i], sizes[i]), active == i);
+		return new Snapshot(seats, dealerHidesCard, version);
+	}
+
+	/**
+	 * Immutable state of a seat or the dealer.
+	 */
+	static class Seat {
+		final String name;
+		final int count;
+		final int bet;
+		final int balance;
+		final int[] cards;
+		final boolean active;
+
+		Seat(String name, int count, int bet, int balance, int[] cards, boolean active) {
+			this.name = name;
+			this.count = count;
+			this.bet = bet;
+			this.balance = balance;
+			this.cards = cards;
+			this.active = active;
+		}
+	}
+
+	/**
+	 * Immutable state of the table, seats first and dealer last.
+	 */
+	static class Snapshot {
+		final Seat[] seats;
+		final boolean dealerHidesCard;
+		final long version;
+
+		Snapshot(Seat[] seats, boolean dealerHidesCard, long version) {
+			this.seats = seats;
+			this.dealerHidesCard = dealerHidesCard;
+			this.version = version;
+		}
+	}
+
+}
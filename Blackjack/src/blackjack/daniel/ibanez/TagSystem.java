@@ -0,0 +1,50 @@
+package blackjack.daniel.ibanez;
+
+/**
+ * Enumeration of well known card counting systems.
+ *
+ */
+enum Tags implements TagSystem {
+	//			A   2  3  4  5  6  7  8  9  10		balanced
+	HI_LO(	 	-1, 1, 1, 1, 1, 1, 0, 0, 0, -1,		true),
+	KO(			-1, 1, 1, 1, 1, 1, 1, 0, 0, -1,		false),
+	OMEGA_II(	 0, 1, 1, 2, 2, 2, 1, 0, -1, -2,	true);
+
+	private int[] tags;
+	private boolean balanced;
+
+	private Tags(int ace, int two, int three, int four, int five, int six, int seven,
+			int eight, int nine, int ten, boolean balanced) {
+		tags = new int[] { 0, ace, two, three, four, five, six, seven, eight, nine, ten };
+		this.balanced = balanced;
+	}
+
+	@Override
+	public int tag(int rank) {
+		return tags[rank];
+	}
+
+	@Override
+	public boolean isBalanced() {
+		return balanced;
+	}
+}
+
+/**
+ * Card counting system. Every card leaving the shoe adds its tag to the
+ * running count.
+ *
+ */
+public interface TagSystem {
+	/**
+	 * @param rank	rank of the card, 1 (Ace) to 10 (ten-valued cards)
+	 * @return		value added to the running count when the card is dealt
+	 */
+	public int tag(int rank);
+
+	/**
+	 * @return	true if the tags of a full deck add up to 0, so the running count
+	 * 			is divided by the decks left to get the true count
+	 */
+	public boolean isBalanced();
+}
@@ -0,0 +1,264 @@
+package blackjack.daniel.ibanez;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Plays strategies against the same dealer on many tables at once and ranks
+ * them. Every table is a session of a number of hands with SEATS computer
+ * players, who start with the same balance and do not buy in again: a player
+ * that runs out of money is out (DEAD) for the rest of the session. The tables
+ * are played as fork/join tasks, so thousands of them share as many threads as
+ * there are cores, and every table has its own seed taken from one master seed.
+ *
+ * The neighbours of a player change its results: the dealer only plays, and
+ * only shows a blackjack that pushes the player's, when some seat stands. So
+ * every table draws its entrants and their seats with its own seed, and every
+ * entrant meets all the others in all seats instead of always the same two.
+ *
+ * The leaderboard is sorted by mean final balance and shows the share of
+ * sessions that ended DEAD and the money won per hand played.
+ *
+ * Usage: java blackjack.daniel.ibanez.Tournament [tables] [hands] [balance] [seed] [threads]
+ *
+ */
+public class Tournament {
+	private static final int SEATS = 3;				// players per table, same as GameLogic
+	private static final int DECKS = 6;
+	private static final double PENETRATION = 0.75;
+	private static final int BLOCK = 8;				// tables played by one task
+
+	private List<Entrant> entrants = new ArrayList<Entrant>();
+	private int balance;
+	private int hands;
+
+	/**
+	 * @param balance	starting balance of every player
+	 * @param hands		hands of a session
+	 */
+	public Tournament(int balance, int hands) {
+		this.balance = balance;
+		this.hands = hands;
+	}
+
+	/**
+	 * Adds a strategy to the tournament.
+	 * @param name		name on the leaderboard
+	 * @param strategy	creates the strategy of a new player, which may be shared
+	 * 					by several players if it keeps no state
+	 */
+	public void enter(String name, Supplier<Strategy> strategy) {
+		entrants.add(new Entrant(name, strategy));
+	}
+
+	/**
+	 * Plays all tables. Results add to those of earlier runs.
+	 * @param tables	number of tables
+	 * @param seed		master seed
+	 * @param pool		pool playing the tables
+	 * @throws IllegalStateException when less than SEATS strategies are entered
+	 */
+	public void run(int tables, long seed, ForkJoinPool pool) throws IllegalStateException {
+		if (entrants.size() < SEATS)
+			throw new IllegalStateException("At least " + SEATS + " strategies are needed");
+
+		long[] seeds = new long[tables];
+		SplittableRandom master = new SplittableRandom(seed);
+		for (int i = 0; i < tables; ++i)
+			seeds[i] = master.nextLong();
+
+		pool.invoke(new Tables(seeds, 0, tables));
+	}
+
+	/**
+	 * Plays a session on one table.
+	 * @param seed		seed of the table, draws who sits where and shuffles the shoe
+	 */
+	private void play(long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		int[] order = new int[entrants.size()];
+		for (int i = 0; i < order.length; ++i)
+			order[i] = i;
+
+		Entrant[] seated = new Entrant[SEATS];
+		PlayerAI[] players = new PlayerAI[SEATS];
+		for (int i = 0; i < SEATS; ++i) {
+			int j = i + random.nextInt(order.length - i);	// drawn from the entrants not seated yet
+			int entrant = order[j];
+			order[j] = order[i];
+			order[i] = entrant;
+			seated[i] = entrants.get(entrant);
+			players[i] = new PlayerAI(seated[i].name, balance, seated[i].strategy.get());
+		}
+
+		Table table = new Table(new Shoe(DECKS, PENETRATION, random), players);
+		long[] played = new long[SEATS];
+		for (int n = 0; n < hands && table.playHand(); ++n)
+			for (int i = 0; i < SEATS; ++i)
+				if (table.getWinner(i) != null)
+					played[i]++;
+
+		for (int i = 0; i < SEATS; ++i)
+			seated[i].add(played[i], players[i].getBalance(), players[i].getStatus() == Status.DEAD);
+	}
+
+	/**
+	 * @return	entrants, best mean final balance first
+	 */
+	public Entrant[] leaderboard() {
+		Entrant[] board = entrants.toArray(new Entrant[entrants.size()]);
+		Arrays.sort(board, new Comparator<Entrant>() {
+			@Override
+			public int compare(Entrant a, Entrant b) {
+				return Double.compare(b.getMeanBalance(), a.getMeanBalance());
+			}
+		});
+		return board;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(String.format("%-4s %-16s %-10s %-13s %-10s %s%n",
+				"Rank", "Strategy", "Sessions", "Mean balance", "Bust rate", "EV/hand"));
+		Entrant[] board = leaderboard();
+		for (int i = 0; i < board.length; ++i)
+			sb.append(String.format("%-4d %-16s %-10d %-13.2f %-10s %.4f%n", i + 1, board[i].name,
+					board[i].sessions, board[i].getMeanBalance(),
+					String.format("%.2f%%", board[i].getBustRate() * 100), board[i].getEV()));
+		return sb.toString();
+	}
+
+	/**
+	 * Strategy in the tournament and the results of its sessions.
+	 */
+	public class Entrant {
+		private final String name;
+		private final Supplier<Strategy> strategy;
+		private long sessions;
+		private long busts;
+		private long handsPlayed;
+		private long balances;		// final balances added together
+
+		Entrant(String name, Supplier<Strategy> strategy) {
+			this.name = name;
+			this.strategy = strategy;
+		}
+
+		/**
+		 * Adds the result of a session, from any thread.
+		 */
+		synchronized void add(long played, int finalBalance, boolean dead) {
+			sessions++;
+			handsPlayed += played;
+			balances += finalBalance;
+			if (dead)
+				busts++;
+		}
+
+		/**
+		 * @return	name on the leaderboard
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return	mean balance at the end of a session
+		 */
+		public synchronized double getMeanBalance() {
+			return sessions > 0 ? (double) balances / sessions : 0;
+		}
+
+		/**
+		 * @return	part of the sessions that ended DEAD
+		 */
+		public synchronized double getBustRate() {
+			return sessions > 0 ? (double) busts / sessions : 0;
+		}
+
+		/**
+		 * @return	money won (positive) or lost (negative) per hand played
+		 */
+		public synchronized double getEV() {
+			return handsPlayed > 0 ? (double) (balances - sessions * balance) / handsPlayed : 0;
+		}
+	}
+
+	/**
+	 * Task that plays a range of tables, splitting the range in two halves
+	 * until BLOCK tables or less are left.
+	 *
+	 */
+	private class Tables extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private long[] seeds;
+		private int from, to;
+
+		Tables(long[] seeds, int from, int to) {
+			this.seeds = seeds;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= BLOCK) {
+				for (int i = from; i < to; ++i)
+					play(seeds[i]);
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new Tables(seeds, from, middle), new Tables(seeds, middle, to));
+		}
+	}
+
+	/**
+	 * Main method. Enters the strategies of the project, the solved strategy
+	 * with and without Hi-Lo counting, and players that stand on 12 to 18.
+	 * @param args	number of tables (default 3000), hands per session (default 1000),
+	 * 				starting balance (default 1000), master seed (default 1) and
+	 * 				number of threads (default all cores)
+	 */
+	public static void main(String[] args) {
+		int tables = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+		int hands = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int balance = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) :
+			Runtime.getRuntime().availableProcessors();
+
+		// strategies without state are compiled once and shared by all players
+		final Strategy basic = StrategyTable.compile(new BasicStrategy());
+		final Strategy advanced = StrategyTable.compile(new AdvancedStrategy());
+		final Strategy solved = StrategyTable.compile(new StrategySolver(Rules.GAME, DECKS).solve());
+
+		Tournament tournament = new Tournament(balance, hands);
+		tournament.enter("Basic", () -> basic);
+		tournament.enter("Advanced", () -> advanced);
+		tournament.enter("Solved", () -> solved);
+		tournament.enter("HiLo Advanced", () -> new HiLoStrategy(advanced));
+		tournament.enter("HiLo Solved", () -> new HiLoStrategy(solved));
+		for (int stand = 12; stand <= 18; ++stand) {
+			final Strategy threshold = StrategyTable.compile(new ThresholdStrategy(stand));
+			tournament.enter("Stand on " + stand, () -> threshold);
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		tournament.run(tables, seed, pool);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		pool.shutdown();
+
+		System.out.print(tournament);
+		System.out.println(String.format("%d tables of %d hands in %.2f s (%.0f tables/s) on %d threads",
+				tables, hands, seconds, tables / seconds, threads));
+	}
+
+}